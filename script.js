@@ -1,5 +1,9 @@
 // Global state
 let selectedRoom = null;
+let currentHold = null;
+let holdCountdown = null;
+// Bumped whenever the stay being held changes; a hold answered for an older one is given back
+let holdRequest = 0;
 
 // Initialize app
 document.addEventListener('DOMContentLoaded', () => {
@@ -7,6 +11,23 @@ document.addEventListener('DOMContentLoaded', () => {
     setupFormValidation();
 });
 
+// Give the held room back when the guest closes the tab or navigates away
+window.addEventListener('pagehide', () => {
+    holdRequest++;
+    stopHoldCountdown();
+    if (!currentHold) return;
+    
+    navigator.sendBeacon('http://localhost:8000/api/holds/release', new URLSearchParams({ holdId: currentHold.holdId }));
+    currentHold = null;
+});
+
+// A page restored from the back/forward cache no longer has its hold
+window.addEventListener('pageshow', (e) => {
+    if (e.persisted && document.getElementById('bookingPage').style.display === 'block') {
+        checkAvailability();
+    }
+});
+
 // Load rooms from backend
 async function loadRooms() {
     try {
@@ -65,6 +86,8 @@ function showHome() {
     document.getElementById('bookingPage').style.display = 'none';
     document.getElementById('confirmationPage').style.display = 'none';
     document.getElementById('bookingForm').reset();
+    document.getElementById('availabilityNote').innerHTML = '';
+    releaseHold();
 }
 
 // Setup form validation
@@ -84,6 +107,11 @@ function setupFormValidation() {
         }
     });
     
+    // Show how many rooms are left as soon as dates and room type are known
+    checkinInput.addEventListener('change', checkAvailability);
+    checkoutInput.addEventListener('change', checkAvailability);
+    document.getElementById('roomType').addEventListener('change', checkAvailability);
+    
     // Handle form submission
     form.addEventListener('submit', async (e) => {
         e.preventDefault();
@@ -100,9 +128,12 @@ function setupFormValidation() {
             return;
         }
         
-        // Submit booking
+        // Confirm the held room, or book directly if no hold could be placed
+        const url = currentHold ? 'http://localhost:8000/api/holds/confirm' : 'http://localhost:8000/api/book';
+        if (currentHold) data.holdId = currentHold.holdId;
+        
         try {
-            const response = await fetch('http://localhost:8000/api/book', {
+            const response = await fetch(url, {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/x-www-form-urlencoded',
@@ -111,9 +142,14 @@ function setupFormValidation() {
             });
             
             const result = await response.json();
+            stopHoldCountdown();
+            currentHold = null;
             
             if (result.success) {
                 showConfirmation(result);
+            } else if (response.status === 410) {
+                alert('Your room hold expired. Please check availability and try again.');
+                checkAvailability();
             } else {
                 alert('Booking failed. Please try again.');
             }
@@ -124,6 +160,122 @@ function setupFormValidation() {
     });
 }
 
+// Check free rooms for the chosen stay, with nearby dates if it is sold out
+async function checkAvailability() {
+    const note = document.getElementById('availabilityNote');
+    const checkin = document.getElementById('checkin').value;
+    const checkout = document.getElementById('checkout').value;
+    const roomType = document.getElementById('roomType').value;
+    note.innerHTML = '';
+    note.className = 'availability-note';
+    releaseHold();
+    const request = holdRequest;
+    if (!checkin || !checkout || !roomType || checkout <= checkin) return;
+    
+    try {
+        const params = new URLSearchParams({ checkin, checkout, roomType, flex: 3 });
+        const response = await fetch(`http://localhost:8000/api/rooms/search?${params}`);
+        const result = await response.json();
+        // A later change of dates or room type has taken over
+        if (!result.success || request !== holdRequest) return;
+        
+        const freeRooms = result.roomTypes[0].freeRooms;
+        if (freeRooms > 0) {
+            note.textContent = `✓ ${freeRooms} ${freeRooms === 1 ? 'room' : 'rooms'} left for these dates`;
+            placeHold(request, checkin, checkout, roomType);
+            return;
+        }
+        
+        note.className = 'availability-note sold-out';
+        note.textContent = result.suggestions.length > 0
+            ? 'Sold out for these dates. Try:'
+            : 'Sold out for these dates.';
+        result.suggestions.forEach(suggestion => {
+            const button = document.createElement('button');
+            button.type = 'button';
+            button.className = 'suggestion-btn';
+            button.textContent = `${suggestion.checkIn} → ${suggestion.checkOut}`;
+            button.onclick = () => {
+                document.getElementById('checkin').value = suggestion.checkIn;
+                document.getElementById('checkout').value = suggestion.checkOut;
+                checkAvailability();
+            };
+            note.appendChild(button);
+        });
+    } catch (error) {
+        console.error('Error checking availability:', error);
+    }
+}
+
+// Keep a room for the guest while they fill in their details
+async function placeHold(request, checkin, checkout, roomType) {
+    try {
+        const response = await fetch('http://localhost:8000/api/holds', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/x-www-form-urlencoded',
+            },
+            body: new URLSearchParams({ checkin, checkout, roomType }).toString()
+        });
+        const hold = await response.json();
+        if (!hold.success) return;
+        if (request !== holdRequest) {
+            sendRelease(hold.holdId);
+            return;
+        }
+        
+        currentHold = hold;
+        const note = document.getElementById('availabilityNote');
+        const expiresAt = new Date(hold.expiresAt);
+        const tick = () => {
+            const seconds = Math.max(0, Math.round((expiresAt - Date.now()) / 1000));
+            const clock = `${Math.floor(seconds / 60)}:${String(seconds % 60).padStart(2, '0')}`;
+            note.textContent = `✓ Room held for you for ${clock}`;
+            if (seconds === 0) {
+                stopHoldCountdown();
+                currentHold = null;
+                note.textContent = 'Your room hold expired.';
+            }
+        };
+        tick();
+        holdCountdown = setInterval(tick, 1000);
+    } catch (error) {
+        console.error('Error holding room:', error);
+    }
+}
+
+// Give the held room back when the guest changes their stay or leaves the form
+async function releaseHold() {
+    holdRequest++;
+    stopHoldCountdown();
+    if (!currentHold) return;
+    
+    const holdId = currentHold.holdId;
+    currentHold = null;
+    await sendRelease(holdId);
+}
+
+async function sendRelease(holdId) {
+    try {
+        await fetch('http://localhost:8000/api/holds/release', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/x-www-form-urlencoded',
+            },
+            body: new URLSearchParams({ holdId }).toString()
+        });
+    } catch (error) {
+        console.error('Error releasing hold:', error);
+    }
+}
+
+function stopHoldCountdown() {
+    if (holdCountdown) {
+        clearInterval(holdCountdown);
+        holdCountdown = null;
+    }
+}
+
 // Show confirmation page
 function showConfirmation(booking) {
     document.getElementById('homePage').style.display = 'none';
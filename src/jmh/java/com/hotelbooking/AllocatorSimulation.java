@@ -0,0 +1,151 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.parseOptions;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.OccupancyGrid;
+import com.hotelbooking.HotelBookingSystem.RoomAllocator;
+import com.hotelbooking.HotelBookingSystem.RoomInfo;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Replays one synthetic booking stream against each allocator, with and without a
+ * nightly repack, and reports how many requests were turned away although every night
+ * of the stay had a free room (fragmentation), occupancy of the nights whose demand has
+ * fully arrived, and allocator cost per booking. Stays are 1-14 nights, booked up to
+ * MAX_LEAD days ahead, and one in ten is cancelled before check-in. Run with:
+ * mvn test-compile exec:exec@bench -Dbench.main=com.hotelbooking.AllocatorSimulation
+ *     [-Dbench.args="--rooms=40 --days=730 --load=1.0 --seed=7"]
+ */
+public class AllocatorSimulation {
+    private static final String ROOM_TYPE = "Sim Room";
+    private static final int BASE_DAY = (int) LocalDate.of(2030, 1, 1).toEpochDay();
+    private static final int MAX_LEAD = 90;
+    private static final int[] STAY_NIGHTS = { 1, 1, 1, 1, 2, 2, 2, 3, 3, 4, 5, 7, 7, 10, 14 };
+    
+    // One request: the day it is made, its stay and the day it is cancelled (-1 if never)
+    static class Request {
+        final int madeOn;
+        final int checkIn;
+        final int checkOut;
+        final int cancelOn;
+        
+        Request(int madeOn, int checkIn, int checkOut, int cancelOn) {
+            this.madeOn = madeOn;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+            this.cancelOn = cancelOn;
+        }
+    }
+    
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        int rooms = Integer.parseInt(options.getOrDefault("rooms", "40"));
+        int days = Integer.parseInt(options.getOrDefault("days", "730"));
+        double load = Double.parseDouble(options.getOrDefault("load", "1.0"));
+        List<Request> stream = stream(rooms, days, load, new SplittableRandom(Long.parseLong(options.getOrDefault("seed", "7"))));
+        
+        System.out.printf("%d rooms, %d days, %,d requests (offered load %.2f)%n", rooms, days, stream.size(), load);
+        System.out.printf("%-20s %9s %9s %12s %11s %10s %9s %11s%n", "allocator", "accepted", "rejected",
+            "fragmented", "occupancy", "ns/book", "moved", "repack ms");
+        // The first round only warms up the JIT so the costs of the second are comparable
+        for (int round = 0; round < 2; round++) {
+            List<String> lines = Arrays.asList(
+                simulate("first-fit", RoomAllocator.FIRST_FIT, false, rooms, days, stream),
+                simulate("best-fit", RoomAllocator.BEST_FIT, false, rooms, days, stream),
+                simulate("first-fit + repack", RoomAllocator.FIRST_FIT, true, rooms, days, stream),
+                simulate("best-fit + repack", RoomAllocator.BEST_FIT, true, rooms, days, stream));
+            if (round == 1) lines.forEach(System.out::println);
+        }
+    }
+    
+    static List<Request> stream(int rooms, int days, double load, SplittableRandom random) {
+        double meanNights = Arrays.stream(STAY_NIGHTS).average().orElse(1);
+        double perDay = rooms * load / meanNights;
+        List<Request> stream = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            // Poisson arrivals (Knuth), most of them booked a few weeks ahead
+            int arrivals = 0;
+            for (double p = random.nextDouble(); p > Math.exp(-perDay); p *= random.nextDouble()) {
+                arrivals++;
+            }
+            for (int i = 0; i < arrivals; i++) {
+                int lead = Math.min(MAX_LEAD, (int) (-Math.log(1 - random.nextDouble()) * 21));
+                int checkIn = BASE_DAY + day + lead;
+                int nights = STAY_NIGHTS[random.nextInt(STAY_NIGHTS.length)];
+                int cancelOn = random.nextInt(10) == 0 ? day + random.nextInt(lead + 1) : -1;
+                stream.add(new Request(day, checkIn, checkIn + nights, cancelOn));
+            }
+        }
+        return stream;
+    }
+    
+    static String simulate(String label, RoomAllocator allocator, boolean repack, int rooms, int days, List<Request> stream) {
+        BookingEngine engine = new BookingEngine(Collections.singletonMap(ROOM_TYPE, new RoomInfo(1000, rooms)));
+        engine.allocator = allocator;
+        int[] ids = new int[stream.size()];
+        Map<Integer, List<Integer>> cancellations = new HashMap<>();
+        int accepted = 0;
+        int fragmented = 0;
+        long bookNanos = 0;
+        long moved = 0;
+        long repackNanos = 0;
+        
+        int next = 0;
+        for (int day = 0; day < days; day++) {
+            if (repack) {
+                long start = System.nanoTime();
+                moved += engine.repack(ROOM_TYPE, BASE_DAY + day);
+                repackNanos += System.nanoTime() - start;
+            }
+            for (int index : cancellations.getOrDefault(day, Collections.emptyList())) {
+                engine.delete(ids[index]);
+            }
+            for (; next < stream.size() && stream.get(next).madeOn == day; next++) {
+                Request request = stream.get(next);
+                long start = System.nanoTime();
+                Booking booking = engine.book("Sim Guest", request.checkIn, request.checkOut, 1, ROOM_TYPE);
+                bookNanos += System.nanoTime() - start;
+                if (booking == null) {
+                    if (everyNightHasRoom(engine.grid, rooms, request)) fragmented++;
+                    continue;
+                }
+                accepted++;
+                ids[next] = booking.id;
+                if (request.cancelOn >= 0) {
+                    cancellations.computeIfAbsent(request.cancelOn, k -> new ArrayList<>()).add(next);
+                }
+            }
+        }
+        
+        // Nights from MAX_LEAD on have seen all of their demand
+        long sold = 0;
+        for (int day = BASE_DAY + MAX_LEAD; day < BASE_DAY + days; day++) {
+            for (int slot = 0; slot < rooms; slot++) {
+                if (engine.grid.bookingAt(day, slot) != 0) sold++;
+            }
+        }
+        double occupancy = 100.0 * sold / ((long) rooms * (days - MAX_LEAD));
+        return String.format("%-20s %,9d %,9d %,12d %10.1f%% %,10d %,9d %,11d", label, accepted,
+            stream.size() - accepted, fragmented, occupancy, bookNanos / stream.size(), moved, repackNanos / 1_000_000);
+    }
+    
+    private static boolean everyNightHasRoom(OccupancyGrid grid, int rooms, Request request) {
+        for (int day = request.checkIn; day < request.checkOut; day++) {
+            boolean free = false;
+            for (int slot = 0; slot < rooms && !free; slot++) {
+                free = grid.bookingAt(day, slot) == 0;
+            }
+            if (!free) return false;
+        }
+        return true;
+    }
+}
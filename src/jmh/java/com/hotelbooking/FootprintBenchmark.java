@@ -0,0 +1,60 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.parseOptions;
+
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingStore;
+import java.time.LocalDate;
+
+/**
+ * Measures retained heap per booking: fills a private BookingEngine with one-night
+ * stays on consecutive days, then keeps only a bare BookingStore of the same rows,
+ * comparing used heap after full GCs each time. Run with:
+ * mvn test-compile exec:exec@bench -Dbench.main="-Xmx1g com.hotelbooking.FootprintBenchmark" [-Dbench.args=--bookings=10000000]
+ */
+public class FootprintBenchmark {
+    public static void main(String[] args) {
+        int total = Integer.parseInt(parseOptions(args).getOrDefault("bookings", "10000000"));
+        String[] roomTypes = MicroBenchmark.roomTypePerSlot();
+        int base = (int) LocalDate.of(1900, 1, 1).toEpochDay();
+        
+        long empty = usedHeap();
+        BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            int checkInDay = base + i / roomTypes.length;
+            engine.book("Guest " + i, checkInDay, checkInDay + 1, 2, roomTypes[i % roomTypes.length]);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long withEngine = usedHeap() - empty;
+        System.out.printf("Booked %,d stays through the engine in %.2f s (%,.0f bookings/s)%n",
+            engine.size(), seconds, engine.size() / seconds);
+        System.out.printf("Engine (store + occupancy grid + name index): %,d MB, %.1f bytes per booking%n",
+            withEngine >> 20, (double) withEngine / engine.size());
+        
+        BookingStore store = engine.store;
+        engine = null;
+        long storeOnly = usedHeap() - empty;
+        System.out.printf("Columnar store alone: %,d MB, %.1f bytes per booking%n",
+            storeOnly >> 20, (double) storeOnly / store.size());
+        
+        // Keep the store reachable until it has been measured
+        if (store.get(store.firstId()) == null) {
+            System.out.println("First booking missing from the store");
+        }
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
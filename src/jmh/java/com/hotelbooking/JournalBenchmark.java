@@ -0,0 +1,146 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingJournal;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Journal group-commit throughput from 64 threads, and recovery time from a journal and
+ * from a snapshot of the same bookings. Stays are one night each, filling every room of
+ * consecutive days so every booking succeeds.
+ */
+@Fork(1)
+public class JournalBenchmark {
+    private static final LocalDate BASE = LocalDate.of(2000, 1, 1);
+
+    @State(Scope.Benchmark)
+    public static class Commits {
+        final AtomicInteger next = new AtomicInteger();
+        String[] roomTypes;
+        Path dir;
+        BookingEngine engine;
+        BookingJournal journal;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException {
+            roomTypes = MicroBenchmark.roomTypePerSlot();
+            dir = Files.createTempDirectory("hotel-journal-bench");
+            engine = new BookingEngine(ROOM_INVENTORY);
+            journal = BookingJournal.open(dir.toFile(), 0, engine);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            journal.close();
+            delete(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        @Param({ "1000000" })
+        int bookings;
+
+        Path journalOnly;
+        Path withSnapshot;
+
+        @Setup(Level.Trial)
+        public void write() throws IOException {
+            journalOnly = Files.createTempDirectory("hotel-journal-bench");
+            fill(journalOnly.toFile(), bookings);
+            withSnapshot = Files.createTempDirectory("hotel-journal-bench");
+            fill(withSnapshot.toFile(), bookings);
+            BookingJournal journal = BookingJournal.open(withSnapshot.toFile(), 0, new BookingEngine(ROOM_INVENTORY));
+            journal.snapshot();
+            journal.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            JournalBenchmark.delete(journalOnly);
+            JournalBenchmark.delete(withSnapshot);
+        }
+    }
+
+    @Benchmark
+    @Threads(64)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Booking commit(Commits state) {
+        Booking booking = book(state.engine, state.roomTypes, state.next.getAndIncrement());
+        state.engine.awaitDurable();
+        return booking;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int recoverFromJournal(Recovery state) throws IOException {
+        return recover(state.journalOnly);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public int recoverFromSnapshot(Recovery state) throws IOException {
+        return recover(state.withSnapshot);
+    }
+
+    private static Booking book(BookingEngine engine, String[] roomTypes, int i) {
+        LocalDate checkIn = BASE.plusDays(i / roomTypes.length);
+        return engine.book("Guest " + i, checkIn.toString(), checkIn.plusDays(1).toString(),
+            "2", roomTypes[i % roomTypes.length]);
+    }
+
+    private static void fill(File dir, int bookings) throws IOException {
+        String[] roomTypes = MicroBenchmark.roomTypePerSlot();
+        BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+        BookingJournal journal = BookingJournal.open(dir, 0, engine);
+        for (int i = 0; i < bookings; i++) {
+            book(engine, roomTypes, i);
+        }
+        journal.close();
+    }
+
+    private static int recover(Path dir) throws IOException {
+        BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+        BookingJournal.open(dir.toFile(), 0, engine).close();
+        return engine.size();
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.writeBooking;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.JsonWriter;
+import com.hotelbooking.HotelBookingSystem.RoomTypes;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the old String.format encoding of GET /api/bookings with JsonWriter on 10k
+ * bookings. Add -prof gc for bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    @Param({ "10000" })
+    int bookingCount;
+
+    private final List<Booking> bookings = new ArrayList<>();
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    @Setup
+    public void createBookings() {
+        int base = (int) LocalDate.of(2030, 1, 1).toEpochDay();
+        byte doubleRoom = RoomTypes.ordinal("Double Room");
+        for (int i = 0; i < bookingCount; i++) {
+            int checkInDay = base + i % 365;
+            bookings.add(new Booking(1000 + i, "Guest \"" + i + "\"", checkInDay, checkInDay + 2,
+                2, doubleRoom, 1 + i % 8, 3600));
+        }
+    }
+
+    @Benchmark
+    public void stringFormat() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < bookings.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append(legacyBookingToJson(bookings.get(i)));
+        }
+        json.append("]");
+        byte[] response = json.toString().getBytes();
+        sink.write(response, 0, response.length);
+    }
+
+    @Benchmark
+    public void jsonWriter() throws IOException {
+        JsonWriter json = JsonWriter.forStream(sink);
+        json.beginArray();
+        for (Booking booking : bookings) {
+            writeBooking(json, booking);
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    // The encoding GET /api/bookings used before JsonWriter
+    private static String legacyBookingToJson(Booking booking) {
+        return String.format(
+            "{\"success\":true,\"bookingId\":%d,\"name\":\"%s\",\"roomType\":\"%s\",\"roomNumber\":%d,\"checkIn\":\"%s\",\"checkOut\":\"%s\",\"guests\":%d,\"nights\":%d,\"totalPrice\":%d}",
+            booking.id, booking.name, booking.roomTypeName(), booking.roomNumber, booking.checkIn(),
+            booking.checkOut(), booking.guests, booking.nights(), booking.totalPrice
+        );
+    }
+}
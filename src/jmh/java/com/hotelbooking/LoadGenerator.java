@@ -0,0 +1,207 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.DEFAULT_PROPERTY;
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.createExecutor;
+import static com.hotelbooking.HotelBookingSystem.createServer;
+import static com.hotelbooking.HotelBookingSystem.parseOptions;
+
+import com.hotelbooking.HotelBookingSystem.AsyncLog;
+import com.hotelbooking.HotelBookingSystem.LatencyHistogram;
+import com.hotelbooking.HotelBookingSystem.Node;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.hotelbooking.HotelBookingSystem.ServerExecutor;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load generator: starts the full server on an ephemeral loopback port
+ * (journal in a temporary directory unless --data-dir is given) and runs client threads
+ * that each send a request, read the whole response, record its latency and send the
+ * next. The mix spreads requests over /api/book, filtered /api/bookings pages and
+ * /api/rooms/availability; throughput and latency percentiles are reported per endpoint.
+ * Server options such as --executor, --threads and --queue apply; rate limits are off
+ * unless --rate-limits is given. Run with:
+ * mvn test-compile exec:exec@bench -Dbench.main=com.hotelbooking.LoadGenerator
+ *     [-Dbench.args="--clients=32 --duration=10 --warmup=3 --mix=book:20,list:30,availability:50"]
+ */
+public class LoadGenerator {
+    private static final String[] OPERATIONS = { "book", "list", "availability" };
+    
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "32"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "10"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int[] weights = parseMix(options.getOrDefault("mix", "book:20,list:30,availability:50"));
+        
+        boolean tempData = !options.containsKey("data-dir");
+        File dataDir = tempData ? Files.createTempDirectory("hotel-loadgen").toFile() : new File(options.get("data-dir"));
+        PropertyDirectory directory = new PropertyDirectory(dataDir, 100000);
+        directory.add(DEFAULT_PROPERTY, ROOM_INVENTORY);
+        Node node = new Node(directory);
+        // Every client comes from loopback, which per-client limits would throttle as one
+        options.putIfAbsent("rate-limits", "off");
+        ServerExecutor executor = createExecutor(options);
+        HttpServer server = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            options, node, executor);
+        node.open(DEFAULT_PROPERTY);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+        LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+        LongAdder[] errors = new LongAdder[OPERATIONS.length];
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            latencies[op] = new LatencyHistogram();
+            errors[op] = new LongAdder();
+        }
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean stopping = new AtomicBoolean();
+        String[] roomTypes = MicroBenchmark.roomTypePerSlot();
+        int baseDay = (int) LocalDate.of(2031, 1, 1).toEpochDay();
+        
+        List<Thread> workers = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int clientId = c;
+            Thread worker = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(clientId);
+                while (!stopping.get()) {
+                    int op = pick(weights, random.nextInt(100));
+                    HttpRequest request = request(op, base, clientId, random, roomTypes, baseDay);
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (measuring.get()) {
+                        latencies[op].record(System.nanoTime() - start);
+                        if (!ok) errors[op].increment();
+                    }
+                }
+            }, "loadgen-" + c);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        
+        sleepSeconds(warmupSeconds);
+        measuring.set(true);
+        long start = System.nanoTime();
+        sleepSeconds(durationSeconds);
+        measuring.set(false);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        stopping.set(true);
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        System.out.printf("%d clients, %.1f s measured after %d s warmup, executor: %s%n",
+            clients, seconds, warmupSeconds, executor != null ? executor.describe() : "JDK dispatcher thread");
+        System.out.printf("%-14s %10s %10s %10s %10s %10s %10s %8s%n",
+            "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "errors");
+        long allRequests = 0;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            long[] counts = latencies[op].snapshot();
+            long requests = LatencyHistogram.total(counts);
+            allRequests += requests;
+            System.out.printf("%-14s %,10d %,10.0f %10.2f %10.2f %10.2f %10.2f %,8d%n", OPERATIONS[op], requests,
+                requests / seconds, LatencyHistogram.quantile(counts, 0.5) / 1e6, LatencyHistogram.quantile(counts, 0.9) / 1e6,
+                LatencyHistogram.quantile(counts, 0.99) / 1e6, LatencyHistogram.quantile(counts, 0.999) / 1e6, errors[op].sum());
+        }
+        System.out.printf("%-14s %,10d %,10.0f%n", "total", allRequests, allRequests / seconds);
+        
+        server.stop(0);
+        if (executor != null) executor.shutdown();
+        node.close();
+        AsyncLog.close();
+        if (tempData) {
+            File[] files = dataDir.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            dataDir.delete();
+        }
+    }
+    
+    private static HttpRequest request(int op, String base, int clientId, SplittableRandom random,
+                                                      String[] roomTypes, int baseDay) {
+        LocalDate day = LocalDate.ofEpochDay(baseDay + random.nextInt(365));
+        HttpRequest.Builder request;
+        if (op == 0) {
+            String form = "name=Load+Client+" + clientId + "&checkin=" + day + "&checkout=" + day.plusDays(1 + random.nextInt(4))
+                + "&guests=2&roomType=" + roomTypes[random.nextInt(roomTypes.length)].replace(' ', '+');
+            request = HttpRequest.newBuilder(URI.create(base + "/api/book"))
+                .POST(HttpRequest.BodyPublishers.ofString(form));
+        } else if (op == 1) {
+            String query = random.nextBoolean()
+                ? "from=" + day + "&to=" + day.plusDays(6)
+                : "name=load+client+" + random.nextInt(10);
+            request = HttpRequest.newBuilder(URI.create(base + "/api/bookings?limit=50&" + query));
+        } else {
+            request = HttpRequest.newBuilder(URI.create(base + "/api/rooms/availability?date=" + day));
+        }
+        return request.build();
+    }
+    
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[OPERATIONS.length];
+        for (String part : mix.split(",")) {
+            String[] keyValue = part.split(":");
+            int op = Arrays.asList(OPERATIONS).indexOf(keyValue[0].trim());
+            if (op == -1 || keyValue.length != 2) {
+                throw new IllegalArgumentException("Unknown --mix entry: " + part);
+            }
+            weights[op] = Integer.parseInt(keyValue[1].trim());
+        }
+        // Cumulative percentages so a draw in [0, 100) maps straight to an operation
+        int total = Arrays.stream(weights).sum();
+        int cumulative = 0;
+        for (int op = 0; op < weights.length; op++) {
+            cumulative += weights[op];
+            weights[op] = cumulative * 100 / total;
+        }
+        return weights;
+    }
+    
+    private static int pick(int[] cumulative, int draw) {
+        for (int op = 0; op < cumulative.length; op++) {
+            if (draw < cumulative[op]) return op;
+        }
+        return cumulative.length - 1;
+    }
+    
+    private static void sleepSeconds(int seconds) {
+        try {
+            Thread.sleep(seconds * 1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
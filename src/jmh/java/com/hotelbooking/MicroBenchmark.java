@@ -0,0 +1,200 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.parseQuery;
+import static com.hotelbooking.HotelBookingSystem.writeBooking;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingQuery;
+import com.hotelbooking.HotelBookingSystem.Hold;
+import com.hotelbooking.HotelBookingSystem.JsonWriter;
+import com.hotelbooking.HotelBookingSystem.ReportEngine;
+import com.hotelbooking.HotelBookingSystem.RoomInfo;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks of the hot paths on a private engine holding 1k, 100k and 1M bookings:
+ * availability checks, search, room allocation, holds, booking JSON encoding, form
+ * parsing, listing pages and reports. Add -prof gc for bytes allocated per op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 400, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 400, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class MicroBenchmark {
+    private static final String[] FIRST_NAMES = { "James", "Mary", "Ravi", "Priya", "Ahmed", "Fatima", "Chen",
+        "Mei", "Lucas", "Sofia", "Omar", "Aisha", "Noah", "Emma", "Arjun", "Ananya", "Yusuf", "Layla", "Leo", "Zara" };
+    private static final String[] LAST_NAMES = { "Smith", "Kumar", "Khan", "Wang", "Garcia", "Nair", "Ali", "Brown",
+        "Singh", "Lopez", "Chen", "Iyer", "Hassan", "Martin", "Patel", "Rossi", "Kim", "Silva", "Das", "Meyer" };
+    private static final int BASE_DAY = (int) LocalDate.of(2030, 1, 1).toEpochDay();
+    private static final String FORM = "name=James+Smith&checkin=2030-01-01&checkout=2030-01-04&guests=2&roomType=Double+Room";
+    // Pre-drawn random inputs, indexed by op number so the benchmarks themselves draw nothing
+    private static final int INPUTS = 1 << 12;
+
+    @Param({ "1000", "100000", "1000000" })
+    int bookings;
+
+    private BookingEngine engine;
+    private ReportEngine reports;
+    private String[] roomTypes;
+    private final int[] slots = new int[INPUTS];
+    private final int[] checkIns = new int[INPUTS];
+    private List<Booking> page;
+    private BookingQuery byName;
+    private final BookingQuery byDates = new BookingQuery();
+    private final OutputStream nowhere = OutputStream.nullOutputStream();
+    private int next;
+
+    @Setup
+    public void populate() {
+        SplittableRandom random = new SplittableRandom(42);
+        int days = Math.max(30, bookings / 4);
+        engine = populate(bookings, days, random);
+        roomTypes = roomTypePerSlot();
+        for (int i = 0; i < INPUTS; i++) {
+            slots[i] = random.nextInt(roomTypes.length);
+            checkIns[i] = BASE_DAY + random.nextInt(days);
+        }
+        page = engine.indexes.page(new BookingQuery(), 50);
+        byName = BookingQuery.fromParams(parseQuery("name=priya+n"));
+        reports = new ReportEngine(engine);
+        engine.listeners.add(reports);
+    }
+
+    private int nextInput() {
+        return next++ & (INPUTS - 1);
+    }
+
+    @Benchmark
+    public boolean availabilityIsFree() {
+        int i = nextInput();
+        return engine.grid.isFree(slots[i], checkIns[i], checkIns[i] + 3);
+    }
+
+    @Benchmark
+    public int availabilityDay() {
+        int day = checkIns[nextInput()];
+        int booked = 0;
+        for (int slot = 0; slot < engine.grid.slotCount(); slot++) {
+            if (engine.grid.bookingAt(day, slot) != 0) booked++;
+        }
+        return booked;
+    }
+
+    @Benchmark
+    public int searchAllTypes() {
+        int day = checkIns[nextInput()];
+        int free = 0;
+        for (String roomType : ROOM_INVENTORY.keySet()) {
+            free += engine.roomsFreeForStay(roomType, day, day + 3);
+        }
+        return free;
+    }
+
+    @Benchmark
+    public int bookAndDelete() {
+        int i = nextInput();
+        Booking booking = engine.book("Bench Guest", checkIns[i], checkIns[i] + 2, 2, roomTypes[slots[i]]);
+        if (booking == null) return 0;
+        engine.delete(booking.id);
+        return booking.id;
+    }
+
+    @Benchmark
+    public int holdAndRelease() {
+        int i = nextInput();
+        Hold hold = engine.hold(checkIns[i], checkIns[i] + 2, roomTypes[slots[i]]);
+        if (hold == null) return 0;
+        engine.release(hold.id);
+        return hold.id;
+    }
+
+    @Benchmark
+    public int jsonPage() throws IOException {
+        JsonWriter json = JsonWriter.forStream(nowhere);
+        json.beginArray();
+        for (Booking booking : page) {
+            writeBooking(json, booking);
+        }
+        json.endArray();
+        json.flush();
+        return page.size();
+    }
+
+    @Benchmark
+    public Map<String, String> parseBookingForm() {
+        return parseQuery(FORM);
+    }
+
+    @Benchmark
+    public int listingByNamePrefix() {
+        return engine.indexes.page(byName, 50).size();
+    }
+
+    @Benchmark
+    public int listingByWeek() {
+        byDates.fromDay = checkIns[nextInput()];
+        byDates.toDay = byDates.fromDay + 6;
+        return engine.indexes.page(byDates, 50).size();
+    }
+
+    @Benchmark
+    public Object reportFromRollups() {
+        return reports.rollup(BASE_DAY, BASE_DAY + 30);
+    }
+
+    @Benchmark
+    public Object reportFromScan() {
+        return reports.scan(BASE_DAY, BASE_DAY + 30);
+    }
+
+    /**
+     * Books random 1-3 night stays over the given number of days until the engine holds
+     * the requested count, which leaves rooms roughly half occupied.
+     */
+    static BookingEngine populate(int bookings, int days, SplittableRandom random) {
+        BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+        String[] roomTypes = roomTypePerSlot();
+        while (engine.size() < bookings) {
+            int checkInDay = BASE_DAY + random.nextInt(days);
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            engine.book(name, checkInDay, checkInDay + 1 + random.nextInt(3), 1 + random.nextInt(4),
+                roomTypes[random.nextInt(roomTypes.length)]);
+        }
+        return engine;
+    }
+
+    /**
+     * Room type of every grid slot, so a random slot picks types in proportion to their rooms.
+     */
+    static String[] roomTypePerSlot() {
+        String[] roomTypes = new String[ROOM_INVENTORY.values().stream().mapToInt(i -> i.totalRooms).sum()];
+        int slot = 0;
+        for (Map.Entry<String, RoomInfo> entry : ROOM_INVENTORY.entrySet()) {
+            for (int i = 0; i < entry.getValue().totalRooms; i++) {
+                roomTypes[slot++] = entry.getKey();
+            }
+        }
+        return roomTypes;
+    }
+}
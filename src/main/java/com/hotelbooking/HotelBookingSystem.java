@@ -0,0 +1,5765 @@
+package com.hotelbooking;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+
+public class HotelBookingSystem {
+    
+    // Inventory of the default property, used when no --properties file is given
+    static final Map<String, RoomInfo> ROOM_INVENTORY = new HashMap<>();
+    static final String DEFAULT_PROPERTY = "main";
+    private static final Metrics metrics = new Metrics();
+    // Expiry for every property's room holds, driven by one ticker thread
+    private static final TimingWheel holdTimers = new TimingWheel(100);
+    
+    // Hardcoded staff credentials
+    private static final String STAFF_USERNAME = "admin";
+    private static final String STAFF_PASSWORD = "1234";
+    
+    static {
+        // Initialize room inventory with room counts
+        ROOM_INVENTORY.put("Single Room", new RoomInfo(1000, 5));  // 5 single rooms
+        ROOM_INVENTORY.put("Double Room", new RoomInfo(1800, 8));  // 8 double rooms
+        ROOM_INVENTORY.put("Suite Room", new RoomInfo(3000, 3));   // 3 suite rooms
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        
+        // Each property gets its own engine and journal (snapshot + journal under --data-dir,
+        // recovered before serving); --nodes=N serves them from N in-process nodes on ports
+        // 8000.. to try out routing and moves between nodes
+        PropertyDirectory directory = PropertyDirectory.load(options);
+        int nodeCount = Integer.parseInt(options.getOrDefault("nodes", "1"));
+        List<Node> nodes = new ArrayList<>();
+        List<HttpServer> servers = new ArrayList<>();
+        List<ServerExecutor> executors = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = new Node(directory);
+            ServerExecutor executor = createExecutor(options);
+            servers.add(createServer(new InetSocketAddress(8000 + i), options, node, executor));
+            nodes.add(node);
+            executors.add(executor);
+        }
+        int next = 0;
+        for (String propertyId : directory.propertyIds()) {
+            nodes.get(next++ % nodeCount).open(propertyId);
+        }
+        servers.forEach(HttpServer::start);
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            nodes.forEach(Node::closeStreams);
+            servers.forEach(server -> server.stop(1));
+            AsyncLog.close();
+            for (ServerExecutor executor : executors) {
+                if (executor != null) {
+                    System.out.println("\n" + executor.stats());
+                    executor.shutdown();
+                }
+            }
+            nodes.forEach(Node::close);
+        }));
+        
+        System.out.println("🏨 Hotel Booking System Started!");
+        System.out.println("📍 Customer Portal: http://localhost:8000/ind.html");
+        System.out.println("🔐 Staff Login: http://localhost:8000/staff-login.html");
+        System.out.println("👤 Staff Credentials: admin / 1234");
+        System.out.println("⚙️ Executor: " + (executors.get(0) != null ? executors.get(0).describe() : "JDK dispatcher thread"));
+        for (Node node : nodes) {
+            for (Property property : node.properties()) {
+                System.out.println("\n🏢 Property " + property.id + " on " + node.url
+                    + " (recovered bookings: " + property.engine.size() + ")");
+                property.inventory.forEach((room, info) ->
+                    System.out.println("  " + room + ": " + info.totalRooms + " rooms @ ₹" + info.pricePerNight + "/night")
+                );
+            }
+        }
+        System.out.println("\nPress Ctrl+C to stop the server.");
+    }
+    
+    /**
+     * Executor from --executor: "pool" (bounded worker pool, default), "virtual" (one virtual
+     * thread per exchange) or "dispatcher" (the JDK's single dispatcher thread, returned as null).
+     */
+    static ServerExecutor createExecutor(Map<String, String> options) {
+        return ServerExecutor.create(
+            options.getOrDefault("executor", "pool"),
+            Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors() * 4))),
+            Integer.parseInt(options.getOrDefault("queue", "1000"))
+        );
+    }
+    
+    /**
+     * Binds the server for node with every context, filter and metric registered, ready to
+     * start once the node has opened its properties.
+     */
+    static HttpServer createServer(InetSocketAddress address, Map<String, String> options,
+                                   Node node, ServerExecutor executor) throws IOException {
+        // Without TCP_NODELAY, keep-alive responses whose headers and body go out in separate
+        // writes stall ~40 ms on Nagle's algorithm meeting the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(address, 0);
+        node.url = "http://" + (address.getAddress().isAnyLocalAddress() ? "localhost" : address.getAddress().getHostAddress())
+            + ":" + server.getAddress().getPort();
+        
+        // Contexts that act on one property are routed by ?property= (default: the first one)
+        List<HttpContext> contexts = new ArrayList<>();
+        List<HttpContext> propertyContexts = new ArrayList<>();
+        long streamThreshold = Long.parseLong(options.getOrDefault("stream-threshold", String.valueOf(1024 * 1024)));
+        contexts.add(server.createContext("/", new StaticFileHandler(streamThreshold)));
+        propertyContexts.add(server.createContext("/api/rooms", new RoomsHandler()));
+        propertyContexts.add(server.createContext("/api/book", new BookingHandler()));
+        propertyContexts.add(server.createContext("/api/book/batch", new BatchBookingHandler()));
+        contexts.add(server.createContext("/api/login", new LoginHandler()));
+        propertyContexts.add(server.createContext("/api/bookings", new BookingsListHandler()));
+        propertyContexts.add(server.createContext("/api/bookings/export", new BookingsExportHandler()));
+        propertyContexts.add(server.createContext("/api/bookings/delete", new DeleteBookingHandler()));
+        propertyContexts.add(server.createContext("/api/bookings/update", new UpdateBookingHandler()));
+        propertyContexts.add(server.createContext("/api/rooms/availability", new RoomAvailabilityHandler()));
+        propertyContexts.add(server.createContext("/api/rooms/repack", new RepackHandler()));
+        propertyContexts.add(server.createContext("/api/rooms/search", new RoomSearchHandler()));
+        propertyContexts.add(server.createContext("/api/holds", new HoldHandler()));
+        propertyContexts.add(server.createContext("/api/holds/confirm", new ConfirmHoldHandler()));
+        propertyContexts.add(server.createContext("/api/holds/release", new ReleaseHoldHandler()));
+        propertyContexts.add(server.createContext("/api/events", new EventsHandler()));
+        propertyContexts.add(server.createContext("/api/reports", new ReportsHandler()));
+        contexts.add(server.createContext("/api/search", new SearchHandler(node)));
+        contexts.add(server.createContext("/api/metrics", new MetricsHandler()));
+        contexts.addAll(propertyContexts);
+        
+        // Metrics go first so shed exchanges are timed and counted too
+        for (HttpContext context : contexts) {
+            context.getFilters().add(new MetricsFilter(metrics.endpoint(context.getPath())));
+        }
+        // Rate limits run before load shedding, so a noisy client is turned away without taking a slot
+        Map<String, double[]> limits = RateLimitFilter.parseLimits(options.getOrDefault("rate-limits", RateLimitFilter.DEFAULT_LIMITS));
+        for (HttpContext context : contexts) {
+            double[] limit = limits.getOrDefault(context.getPath(), limits.get("*"));
+            if (limit == null) continue;
+            RateLimitFilter filter = new RateLimitFilter(limit[0], (int) limit[1]);
+            context.getFilters().add(filter);
+            metrics.counter("hotel_rate_limited_total{path=\"" + context.getPath() + "\"}",
+                "Requests answered with 429 by the per-client rate limit.", filter.limited::sum);
+        }
+        metrics.counter("hotel_log_dropped_total", "Log lines dropped because the log queue was full.", AsyncLog::dropped);
+        if (executor != null) {
+            metrics.gauge("hotel_executor_queue_depth", "Exchanges waiting for a worker thread.", executor::queueDepth);
+            metrics.counter("hotel_executor_shed_total", "Exchanges answered with 503 because the queue was full.", executor.shed::sum);
+        }
+        
+        if (executor != null) {
+            for (HttpContext context : contexts) {
+                context.getFilters().add(new LoadSheddingFilter(executor));
+            }
+            server.setExecutor(executor);
+        }
+        for (HttpContext context : propertyContexts) {
+            context.getFilters().add(new PropertyFilter(node));
+        }
+        return server;
+    }
+    
+    /**
+     * Which properties exist, their room inventories and which node owns each. Nodes share
+     * one directory; moving a property is a change of owner here. Properties come from
+     * --properties, a file with one line per property:
+     *   annex: Single Room@1200x10, Suite Room@3500x2
+     * Without it there is a single property, "main", with the built-in inventory. The first
+     * property is the default for requests without ?property=.
+     */
+    static class PropertyDirectory {
+        // Owner of a property that is between nodes; requests for it get a 503
+        static final String MOVING = "";
+        
+        private final Map<String, Map<String, RoomInfo>> inventories = new LinkedHashMap<>();
+        private final Map<String, String> owners = new ConcurrentHashMap<>();
+        final File dataDir;
+        final long snapshotEvery;
+        // From --allocator; every property's engine places new stays with it
+        RoomAllocator allocator = RoomAllocator.BEST_FIT;
+        // From --hold-seconds; how long /api/holds keeps a room for a guest
+        long holdMillis = TimeUnit.MINUTES.toMillis(10);
+        // From --holds-per-client; how many live holds one client address may have
+        int maxHoldsPerClient = 3;
+        
+        PropertyDirectory(File dataDir, long snapshotEvery) {
+            this.dataDir = dataDir;
+            this.snapshotEvery = snapshotEvery;
+        }
+        
+        static PropertyDirectory load(Map<String, String> options) throws IOException {
+            PropertyDirectory directory = new PropertyDirectory(new File(options.getOrDefault("data-dir", "data")),
+                Long.parseLong(options.getOrDefault("snapshot-every", "100000")));
+            directory.allocator = RoomAllocator.named(options.getOrDefault("allocator", "best-fit"));
+            directory.holdMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("hold-seconds", "600")));
+            directory.maxHoldsPerClient = Integer.parseInt(options.getOrDefault("holds-per-client", "3"));
+            String file = options.get("properties");
+            if (file == null) {
+                directory.add(DEFAULT_PROPERTY, ROOM_INVENTORY);
+                return directory;
+            }
+            
+            for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int colon = line.indexOf(':');
+                Map<String, RoomInfo> inventory = new LinkedHashMap<>();
+                for (String room : line.substring(colon + 1).split(",")) {
+                    int at = room.indexOf('@');
+                    int x = room.lastIndexOf('x');
+                    inventory.put(room.substring(0, at).trim(), new RoomInfo(
+                        Integer.parseInt(room.substring(at + 1, x).trim()), Integer.parseInt(room.substring(x + 1).trim())));
+                }
+                directory.add(line.substring(0, colon).trim(), inventory);
+            }
+            if (directory.inventories.isEmpty()) {
+                throw new IOException("No properties in " + file);
+            }
+            return directory;
+        }
+        
+        void add(String id, Map<String, RoomInfo> inventory) {
+            // Ids end up in URLs, file names and unescaped JSON
+            if (!id.matches("[a-z0-9-]{1,32}")) {
+                throw new IllegalArgumentException("Property id must be 1-32 of a-z, 0-9 and '-': " + id);
+            }
+            inventories.put(id, inventory);
+        }
+        
+        Set<String> propertyIds() {
+            return inventories.keySet();
+        }
+        
+        String defaultProperty() {
+            return inventories.keySet().iterator().next();
+        }
+        
+        Map<String, RoomInfo> inventory(String id) {
+            return inventories.get(id);
+        }
+        
+        // The default property keeps the top-level directory, as before properties existed
+        File dataDir(String id) {
+            return id.equals(defaultProperty()) ? dataDir : new File(new File(dataDir, "properties"), id);
+        }
+        
+        String owner(String id) {
+            return owners.get(id);
+        }
+        
+        void assign(String id, String nodeUrl) {
+            owners.put(id, nodeUrl);
+        }
+    }
+    
+    /**
+     * One hotel: its inventory and a booking engine, journal and event stream of its own.
+     * Properties share no locks or data, so they scale on separate cores and move between
+     * nodes by reopening their data directory. Requests hold the property while they run
+     * so a move can wait for them before closing the journal.
+     */
+    static class Property {
+        final String id;
+        final Map<String, RoomInfo> inventory;
+        final BookingEngine engine;
+        final BookingEvents events;
+        final ReportEngine reports;
+        final BookingJournal journal;
+        // The inventory is fixed for the property's lifetime, so GET /api/rooms is rendered once
+        final PreRenderedResponse roomsResponse;
+        // Running requests; close() waits on this property's monitor for the last to release
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile boolean closing;
+        
+        Property(String id, Map<String, RoomInfo> inventory, File dataDir, PropertyDirectory directory) throws IOException {
+            this.id = id;
+            this.inventory = inventory;
+            this.roomsResponse = PreRenderedResponse.of(RoomsHandler.render(inventory));
+            this.engine = new BookingEngine(inventory);
+            engine.allocator = directory.allocator;
+            engine.holdMillis = directory.holdMillis;
+            engine.maxHoldsPerClient = directory.maxHoldsPerClient;
+            this.journal = BookingJournal.open(dataDir, directory.snapshotEvery, engine);
+            this.events = new BookingEvents(engine);
+            // Built from the recovered bookings before the property takes requests
+            this.reports = new ReportEngine(engine);
+            engine.listeners.add(metrics);
+            engine.listeners.add(events);
+            engine.listeners.add(reports);
+        }
+        
+        boolean acquire() {
+            active.incrementAndGet();
+            if (closing) {
+                release();
+                return false;
+            }
+            return true;
+        }
+        
+        void release() {
+            // closing is read after the decrement, so either close() sees 0 or it is woken
+            if (active.decrementAndGet() == 0 && closing) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+        
+        /**
+         * Turns new requests away, waits up to 10 s for running ones and closes the journal.
+         */
+        void close() {
+            closing = true;
+            events.close();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            synchronized (this) {
+                try {
+                    long remaining;
+                    while (active.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (active.get() > 0) {
+                System.out.println("⚠️ [" + id + "] Closing the journal with " + active.get() + " requests still running");
+            }
+            journal.close();
+        }
+    }
+    
+    /**
+     * The properties one HttpServer serves. Requests for a property owned by another node
+     * are redirected there (307 keeps method and body), so clients need only know one node.
+     */
+    static class Node {
+        final PropertyDirectory directory;
+        // Set by createServer once the port is bound
+        String url;
+        private final Map<String, Property> hosted = new ConcurrentHashMap<>();
+        final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        
+        Node(PropertyDirectory directory) {
+            this.directory = directory;
+        }
+        
+        /**
+         * Recovers the property from its data directory and starts serving it here.
+         */
+        Property open(String id) throws IOException {
+            Property property = new Property(id, directory.inventory(id), directory.dataDir(id), directory);
+            hosted.put(id, property);
+            String label = "{property=\"" + id + "\"}";
+            metrics.gauge("hotel_bookings_live" + label, "Bookings currently stored.", property.engine::size);
+            metrics.gauge("hotel_event_subscribers" + label, "Open /api/events streams.", property.events::subscribers);
+            metrics.counter("hotel_event_resyncs_total" + label, "Event streams told to refetch after their buffer overflowed.", property.events.resyncs::sum);
+            metrics.gauge("hotel_holds_active" + label, "Rooms held for guests who are checking out.", property.engine::holdCount);
+            metrics.counter("hotel_holds_expired_total" + label, "Holds released by expiry rather than confirmed or released.", property.engine.expiredHolds::sum);
+            metrics.counter("hotel_journal_records_total" + label, "Records written to the booking journal.", property.journal::recordCount);
+            metrics.counter("hotel_journal_commits_total" + label, "Group commits (fsyncs) of the booking journal.", property.journal::commitCount);
+            directory.assign(id, url);
+            return property;
+        }
+        
+        /**
+         * Hands a property to target: requests get a 503 while its journal is closed here
+         * and recovered there, then are routed to target.
+         */
+        void move(String id, Node target) throws IOException {
+            Property property = hosted.get(id);
+            if (property == null) throw new IllegalArgumentException(id + " is not hosted on " + url);
+            directory.assign(id, PropertyDirectory.MOVING);
+            hosted.remove(id);
+            property.close();
+            target.open(id);
+            AsyncLog.info("🚚 Property moved: ", id + " from " + url + " to " + target.url);
+        }
+        
+        /**
+         * The property if it is served here and not closing, held until release().
+         */
+        Property acquire(String id) {
+            Property property = hosted.get(id);
+            return property != null && property.acquire() ? property : null;
+        }
+        
+        Collection<Property> properties() {
+            return hosted.values();
+        }
+        
+        void closeStreams() {
+            hosted.values().forEach(property -> property.events.close());
+        }
+        
+        void close() {
+            for (Property property : hosted.values()) {
+                property.close();
+                System.out.println("[" + property.id + "] " + property.journal.stats());
+            }
+            hosted.clear();
+        }
+    }
+    
+    /**
+     * Resolves ?property= for the contexts that act on one property and holds it for the
+     * exchange; properties served by another node are redirected, unknown ones are a 404.
+     */
+    static class PropertyFilter extends Filter {
+        static final String ATTRIBUTE = "property";
+        private final Node node;
+        
+        PropertyFilter(Node node) {
+            this.node = node;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            String id = parseQuery(exchange.getRequestURI().getRawQuery()).get("property");
+            if (id == null) {
+                id = node.directory.defaultProperty();
+            }
+            
+            Property property = node.acquire(id);
+            if (property == null) {
+                String owner = node.directory.owner(id);
+                setCORSHeaders(exchange);
+                if (owner == null || owner.equals(node.url)) {
+                    sendError(exchange, 404, "Unknown property");
+                } else if (owner.equals(PropertyDirectory.MOVING)) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendError(exchange, 503, "Property is moving, retry shortly");
+                } else {
+                    exchange.getResponseHeaders().set("Location", owner + exchange.getRequestURI().toASCIIString());
+                    exchange.sendResponseHeaders(307, -1);
+                    exchange.close();
+                }
+                return;
+            }
+            
+            exchange.setAttribute(ATTRIBUTE, property);
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                property.release();
+            }
+        }
+        
+        @Override
+        public String description() {
+            return "Routes requests to the property named by ?property=";
+        }
+    }
+    
+    private static Property property(HttpExchange exchange) {
+        return (Property) exchange.getAttribute(PropertyFilter.ATTRIBUTE);
+    }
+    
+    static class StaticFileHandler implements HttpHandler {
+        private final StaticAssetCache cache;
+        
+        // Files larger than this are streamed from disk instead of being held in memory
+        StaticFileHandler(long streamThreshold) {
+            this.cache = new StaticAssetCache(32 * 1024 * 1024, streamThreshold);
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            
+            if (path.equals("/")) {
+                path = "/index.html";
+            }
+            
+            File file = new File("." + path);
+            
+            if (file.exists() && !file.isDirectory()) {
+                String contentType = getContentType(path);
+                StaticAsset asset = cache.get(path, file, contentType);
+                
+                Headers headers = exchange.getResponseHeaders();
+                headers.set("Content-Type", contentType);
+                headers.set("ETag", asset.etag);
+                headers.set("Last-Modified", asset.lastModifiedHeader);
+                headers.set("Cache-Control", "public, max-age=60");
+                headers.set("Accept-Ranges", "bytes");
+                if (asset.gzipped != null) {
+                    headers.set("Vary", "Accept-Encoding");
+                }
+                
+                if (asset.isNotModified(exchange.getRequestHeaders())) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                
+                long[] range = parseRange(exchange.getRequestHeaders(), asset);
+                if (range != null && range.length == 0) {
+                    headers.set("Content-Range", "bytes */" + asset.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+                
+                if (range != null) {
+                    long count = range[1] - range[0] + 1;
+                    headers.set("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + asset.length);
+                    exchange.sendResponseHeaders(206, count);
+                    writeBody(exchange, asset, file, range[0], count);
+                    return;
+                }
+                
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (asset.gzipped != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    headers.set("Content-Encoding", "gzip");
+                    exchange.sendResponseHeaders(200, asset.gzipped.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(asset.gzipped);
+                    os.close();
+                    return;
+                }
+                
+                exchange.sendResponseHeaders(200, asset.length);
+                writeBody(exchange, asset, file, 0, asset.length);
+            } else {
+                String response = "404 - File Not Found";
+                exchange.sendResponseHeaders(404, response.length());
+                OutputStream os = exchange.getResponseBody();
+                os.write(response.getBytes());
+                os.close();
+            }
+        }
+        
+        private void writeBody(HttpExchange exchange, StaticAsset asset, File file, long start, long count) throws IOException {
+            try (OutputStream os = exchange.getResponseBody()) {
+                if (asset.bytes != null) {
+                    os.write(asset.bytes, (int) start, (int) count);
+                    return;
+                }
+                
+                // Large file: transfer from the FileChannel in fixed-size chunks so heap use
+                // per request stays constant regardless of file size
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(os);
+                    long position = start;
+                    long remaining = count;
+                    while (remaining > 0) {
+                        long sent = channel.transferTo(position, remaining, target);
+                        if (sent <= 0) break;
+                        position += sent;
+                        remaining -= sent;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Parses a single "bytes=" range. Returns null to serve the whole file (no header,
+         * multiple ranges, stale If-Range), an empty array when the range is unsatisfiable,
+         * or {first, last} inclusive.
+         */
+        private long[] parseRange(Headers requestHeaders, StaticAsset asset) {
+            String range = requestHeaders.getFirst("Range");
+            if (range == null || !range.startsWith("bytes=") || range.indexOf(',') != -1) return null;
+            
+            String ifRange = requestHeaders.getFirst("If-Range");
+            if (ifRange != null && !ifRange.equals(asset.etag) && !ifRange.equals(asset.lastModifiedHeader)) {
+                return null;
+            }
+            
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash == -1) return null;
+            
+            long length = asset.length;
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) return new long[0];
+                    first = Math.max(0, length - suffix);
+                    last = length - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    last = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            
+            if (first >= length || last < first) return new long[0];
+            return new long[] { first, Math.min(last, length - 1) };
+        }
+        
+        private String getContentType(String path) {
+            if (path.endsWith(".html")) return "text/html";
+            if (path.endsWith(".css")) return "text/css";
+            if (path.endsWith(".js")) return "application/javascript";
+            if (path.endsWith(".jpg") || path.endsWith(".jpeg")) return "image/jpeg";
+            if (path.endsWith(".png")) return "image/png";
+            if (path.endsWith(".gif")) return "image/gif";
+            return "text/plain";
+        }
+    }
+    
+    /**
+     * Size-bounded LRU cache of static files. Each entry carries its ETag and, for text
+     * assets, a pre-gzipped copy; an entry is reloaded when the file's mtime or size changes.
+     * Files above maxEntryBytes only get their validators cached, not their contents.
+     */
+    static class StaticAssetCache {
+        private final long maxTotalBytes;
+        private final long maxEntryBytes;
+        private final LinkedHashMap<String, StaticAsset> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long totalBytes;
+        
+        StaticAssetCache(long maxTotalBytes, long maxEntryBytes) {
+            this.maxTotalBytes = maxTotalBytes;
+            this.maxEntryBytes = maxEntryBytes;
+        }
+        
+        StaticAsset get(String path, File file, String contentType) throws IOException {
+            long lastModified = file.lastModified();
+            long length = file.length();
+            
+            synchronized (this) {
+                StaticAsset cached = entries.get(path);
+                if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+                    return cached;
+                }
+            }
+            
+            // Load outside the lock so a cold read does not stall other hits
+            StaticAsset asset = StaticAsset.load(file, contentType, lastModified, length, length <= maxEntryBytes);
+            
+            synchronized (this) {
+                StaticAsset previous = entries.put(path, asset);
+                if (previous != null) totalBytes -= previous.footprint();
+                totalBytes += asset.footprint();
+                
+                Iterator<StaticAsset> eldest = entries.values().iterator();
+                while (totalBytes > maxTotalBytes && eldest.hasNext()) {
+                    StaticAsset evicted = eldest.next();
+                    if (evicted == asset) break;
+                    totalBytes -= evicted.footprint();
+                    eldest.remove();
+                }
+            }
+            return asset;
+        }
+    }
+    
+    static class StaticAsset {
+        byte[] bytes;
+        byte[] gzipped;
+        String etag;
+        String lastModifiedHeader;
+        long lastModified;
+        long length;
+        
+        static StaticAsset load(File file, String contentType, long lastModified, long length,
+                                boolean keepContents) throws IOException {
+            StaticAsset asset = new StaticAsset();
+            asset.lastModified = lastModified;
+            asset.length = length;
+            asset.lastModifiedHeader = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC));
+            
+            if (!keepContents) {
+                asset.etag = "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+                return asset;
+            }
+            
+            asset.bytes = Files.readAllBytes(file.toPath());
+            CRC32 crc = new CRC32();
+            crc.update(asset.bytes);
+            asset.etag = "\"" + Long.toHexString(asset.bytes.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+            
+            if (contentType.startsWith("text/") || contentType.equals("application/javascript")) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(asset.bytes.length / 2);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                    gzip.write(asset.bytes);
+                }
+                if (buffer.size() < asset.bytes.length) {
+                    asset.gzipped = buffer.toByteArray();
+                }
+            }
+            return asset;
+        }
+        
+        boolean isNotModified(Headers requestHeaders) {
+            String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                for (String tag : ifNoneMatch.split(",")) {
+                    String trimmed = tag.trim();
+                    if (trimmed.equals("*") || trimmed.equals(etag)) return true;
+                }
+                return false;
+            }
+            
+            String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+            if (ifModifiedSince != null) {
+                try {
+                    long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                    return lastModified / 1000 <= since / 1000;
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+        
+        long footprint() {
+            return (bytes != null ? bytes.length : 0) + (gzipped != null ? gzipped.length : 0);
+        }
+    }
+    
+    static class RoomsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            
+            property(exchange).roomsResponse.send(exchange);
+        }
+        
+        static byte[] render(Map<String, RoomInfo> inventory) {
+            JsonWriter json = JsonWriter.forBuffer();
+            json.beginArray();
+            int id = 1;
+            
+            for (Map.Entry<String, RoomInfo> entry : inventory.entrySet()) {
+                String roomType = entry.getKey();
+                RoomInfo info = entry.getValue();
+                String imageName = roomType.toLowerCase().split(" ")[0] + ".jpg";
+                
+                json.beginObject()
+                    .field("id", id++)
+                    .field("name", roomType)
+                    .field("price", info.pricePerNight)
+                    .field("totalRooms", info.totalRooms)
+                    .field("image", imageName)
+                    .field("description", getDescription(roomType))
+                    .endObject();
+            }
+            return json.endArray().toByteArray();
+        }
+        
+        private static String getDescription(String roomType) {
+            switch (roomType) {
+                case "Single Room": return "Cozy room for solo travelers";
+                case "Double Room": return "Comfortable room for couples";
+                case "Suite Room": return "Luxurious suite with premium amenities";
+                default: return "Comfortable accommodation";
+            }
+        }
+    }
+    
+    /**
+     * A fully encoded JSON response with an ETag taken from its content and an optional
+     * gzipped copy. Serving it is a header check and a copy.
+     */
+    static class PreRenderedResponse {
+        final byte[] bytes;
+        final byte[] gzipped;
+        final String etag;
+        
+        private PreRenderedResponse(byte[] bytes, byte[] gzipped, String etag) {
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+            this.etag = etag;
+        }
+        
+        static PreRenderedResponse of(byte[] bytes) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            String etag = "\"" + Long.toHexString(crc.getValue()) + "\"";
+            
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(bytes);
+            }
+            byte[] gzipped = buffer.size() < bytes.length ? buffer.toByteArray() : null;
+            return new PreRenderedResponse(bytes, gzipped, etag);
+        }
+        
+        void send(HttpExchange exchange) throws IOException {
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Cache-Control", "no-cache");
+            headers.set("Vary", "Accept-Encoding");
+            
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            
+            byte[] body = bytes;
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (gzipped != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                headers.set("Content-Encoding", "gzip");
+                body = gzipped;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+        }
+    }
+    
+    static class BookingHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                String query = br.readLine();
+                
+                Map<String, String> params = parseQuery(query);
+                
+                // Availability check and room assignment happen atomically inside the engine
+                Booking booking;
+                try {
+                    booking = createBookingFromParams(engine, params);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                if (booking == null) {
+                    sendError(exchange, 200, "No rooms available for selected dates");
+                    return;
+                }
+                if (!engine.awaitDurable()) {
+                    sendError(exchange, 500, "The change could not be saved");
+                    return;
+                }
+                
+                JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                writeBooking(json, booking);
+                json.finish();
+                
+                AsyncLog.info("✅ New Booking: ", booking);
+            }
+        }
+    }
+    
+    /**
+     * POST /api/book/batch books a group of rooms all-or-nothing. The body is either one
+     * /api/book form per line, or CSV (Content-Type text/csv) with a header row such as the
+     * one /api/bookings/export?format=csv produces, so OTA reservation files can be imported
+     * through the same path. A roomNumber column is honoured when that room is free.
+     */
+    static class BatchBookingHandler implements HttpHandler {
+        private static final int MAX_ROOMS = 5000;
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                List<BookingRequest> requests = new ArrayList<>();
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                    if (contentType != null && contentType.startsWith("text/csv")) {
+                        readCsv(br, requests);
+                    } else {
+                        String line;
+                        while ((line = br.readLine()) != null && requests.size() <= MAX_ROOMS) {
+                            if (!line.isBlank()) requests.add(BookingRequest.fromParams(parseQuery(line.trim())));
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, "Invalid booking line: " + e.getMessage());
+                    return;
+                }
+                if (requests.isEmpty() || requests.size() > MAX_ROOMS) {
+                    sendError(exchange, 400, "A group booking needs 1 to " + MAX_ROOMS + " rooms");
+                    return;
+                }
+                
+                BatchResult result;
+                try {
+                    result = engine.bookAll(requests);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                if (result.bookings == null) {
+                    JsonWriter.forExchange(exchange, 200).beginObject()
+                        .field("success", false)
+                        .field("message", "No rooms available for the whole group; nothing was booked")
+                        .field("failedIndex", result.unplaceable)
+                        .endObject()
+                        .finish();
+                    return;
+                }
+                if (!engine.awaitDurable()) {
+                    sendError(exchange, 500, "The change could not be saved");
+                    return;
+                }
+                
+                long totalPrice = 0;
+                for (Booking booking : result.bookings) {
+                    totalPrice += booking.totalPrice;
+                }
+                JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                json.beginObject()
+                    .field("success", true)
+                    .field("count", result.bookings.size())
+                    .field("totalPrice", totalPrice)
+                    .name("bookings").beginArray();
+                for (Booking booking : result.bookings) {
+                    writeBooking(json, booking);
+                }
+                json.endArray().endObject().finish();
+                
+                AsyncLog.info("👥 Group booking: ", result.bookings.size() + " rooms, first #" + result.bookings.get(0).id);
+            }
+        }
+        
+        private static void readCsv(BufferedReader br, List<BookingRequest> requests) throws IOException {
+            String headerLine = br.readLine();
+            if (headerLine == null) return;
+            List<String> header = parseCsvLine(headerLine);
+            String line;
+            while ((line = br.readLine()) != null && requests.size() <= MAX_ROOMS) {
+                if (line.isBlank()) continue;
+                List<String> fields = parseCsvLine(line);
+                Map<String, String> params = new HashMap<>();
+                for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                    params.put(header.get(i).trim(), fields.get(i));
+                }
+                requests.add(BookingRequest.fromParams(params));
+            }
+        }
+        
+        // RFC 4180 fields on one line: commas split, "quoted" fields may hold commas and "" escapes
+        private static List<String> parseCsvLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+    
+    /**
+     * POST /api/holds (checkin, checkout, roomType) holds a room for the stay while the
+     * guest fills in details or pays; the hold lapses after --hold-seconds unless
+     * confirmed through /api/holds/confirm or given back through /api/holds/release.
+     * A client address with --holds-per-client live holds gets 429 until one of them ends.
+     */
+    static class HoldHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                Map<String, String> params = parseQuery(br.readLine());
+                
+                Hold hold;
+                try {
+                    hold = engine.hold(BookingEngine.epochDay(params.get("checkin")),
+                        BookingEngine.epochDay(params.get("checkout")), params.get("roomType"),
+                        exchange.getRemoteAddress().getAddress());
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                } catch (IllegalStateException e) {
+                    sendError(exchange, 429, e.getMessage());
+                    return;
+                }
+                if (hold == null) {
+                    sendError(exchange, 200, "No rooms available for selected dates");
+                    return;
+                }
+                
+                JsonWriter.forExchange(exchange, 200).beginObject()
+                    .field("success", true)
+                    .field("holdId", hold.token)
+                    .field("roomType", hold.roomType)
+                    .field("roomNumber", hold.roomNumber)
+                    .dateField("checkIn", hold.checkInDay)
+                    .dateField("checkOut", hold.checkOutDay)
+                    .field("nights", hold.checkOutDay - hold.checkInDay)
+                    .field("totalPrice", hold.totalPrice)
+                    .field("expiresAt", Instant.ofEpochMilli(hold.expiresAtMillis).toString())
+                    .field("expiresInSeconds", TimeUnit.MILLISECONDS.toSeconds(engine.holdMillis))
+                    .endObject()
+                    .finish();
+                
+                AsyncLog.info("⏳ Room held: #", hold.id + " - Room " + hold.roomNumber + " (" + hold.roomType + ")");
+            }
+        }
+    }
+    
+    /**
+     * POST /api/holds/confirm (holdId, name, guests) books the held room; 410 once the hold
+     * has expired or been released. holdId is the token POST /api/holds answered with, so
+     * only the guest who placed a hold can confirm or release it.
+     */
+    static class ConfirmHoldHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                Map<String, String> params = parseQuery(br.readLine());
+                
+                Booking booking;
+                try {
+                    booking = engine.confirm(engine.holdId(params.get("holdId")), params.get("name"),
+                        BookingEngine.parseGuests(params.get("guests")));
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                if (booking == null) {
+                    sendError(exchange, 410, "Hold expired or not found");
+                    return;
+                }
+                if (!engine.awaitDurable()) {
+                    sendError(exchange, 500, "The change could not be saved");
+                    return;
+                }
+                
+                JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                writeBooking(json, booking);
+                json.finish();
+                
+                AsyncLog.info("✅ New Booking: ", booking);
+            }
+        }
+    }
+    
+    static class ReleaseHoldHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                Map<String, String> params = parseQuery(br.readLine());
+                
+                boolean released;
+                try {
+                    released = engine.release(engine.holdId(params.get("holdId")));
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                JsonWriter.forExchange(exchange, 200).beginObject()
+                    .field("success", released)
+                    .field("message", released ? "Hold released" : "Hold expired or not found")
+                    .endObject()
+                    .finish();
+            }
+        }
+    }
+    
+    static class LoginHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                String query = br.readLine();
+                
+                Map<String, String> params = parseQuery(query);
+                String username = params.get("username");
+                String password = params.get("password");
+                
+                boolean success = STAFF_USERNAME.equals(username) && STAFF_PASSWORD.equals(password);
+                
+                JsonWriter.forExchange(exchange, 200).beginObject()
+                    .field("success", success)
+                    .field("message", success ? "Login successful" : "Invalid credentials")
+                    .endObject()
+                    .finish();
+                
+                if (success) {
+                    AsyncLog.info("🔐 Staff login: ", username);
+                }
+            }
+        }
+    }
+    
+    static class BookingsListHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            setCORSHeaders(exchange);
+            
+            if ("GET".equals(exchange.getRequestMethod())) {
+                // GET /api/bookings/{id}
+                String path = exchange.getRequestURI().getPath();
+                if (path.length() > "/api/bookings/".length()) {
+                    sendBookingById(exchange, engine, path.substring("/api/bookings/".length()));
+                    return;
+                }
+                
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                params.remove("property");
+                if (params.isEmpty()) {
+                    // Unfiltered listing, streamed in chunks as the buffer fills
+                    JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                    json.beginArray();
+                    for (Booking booking : engine.bookings()) {
+                        writeBooking(json, booking);
+                    }
+                    json.endArray().finish();
+                    return;
+                }
+                
+                BookingQuery bookingQuery;
+                try {
+                    bookingQuery = BookingQuery.fromParams(params);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                
+                JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                writePage(json, engine, bookingQuery);
+                json.finish();
+            }
+        }
+        
+        /**
+         * One page of bookings matching bookingQuery: {success, bookings, nextCursor}.
+         */
+        static void writePage(JsonWriter json, BookingEngine engine, BookingQuery bookingQuery) {
+            int limit = bookingQuery.limit;
+            List<Booking> page = engine.indexes.page(bookingQuery, limit + 1);
+            boolean hasMore = page.size() > limit;
+            if (hasMore) {
+                page = page.subList(0, limit);
+            }
+            
+            json.beginObject().field("success", true).name("bookings").beginArray();
+            for (Booking booking : page) {
+                writeBooking(json, booking);
+            }
+            json.endArray().name("nextCursor");
+            if (hasMore) {
+                json.value(page.get(page.size() - 1).id);
+            } else {
+                json.value((String) null);
+            }
+            json.endObject();
+        }
+        
+        private void sendBookingById(HttpExchange exchange, BookingEngine engine, String idText) throws IOException {
+            Booking booking = null;
+            try {
+                booking = engine.find(Integer.parseInt(idText));
+            } catch (NumberFormatException e) {
+                // fall through to 404
+            }
+            
+            if (booking == null) {
+                sendError(exchange, 404, "Booking not found");
+                return;
+            }
+            
+            JsonWriter json = JsonWriter.forExchange(exchange, 200);
+            writeBooking(json, booking);
+            json.finish();
+        }
+    }
+    
+    /**
+     * GET /api/search runs the /api/bookings filters against every property at once:
+     * properties on this node in parallel on the common pool, properties on other nodes
+     * through their /api/bookings. One page per property, in directory order:
+     * {success, results: [{property, page} or {property, error}]}.
+     */
+    static class SearchHandler implements HttpHandler {
+        private static final long TIMEOUT_MILLIS = 5000;
+        private final Node node;
+        
+        SearchHandler(Node node) {
+            this.node = node;
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            if (!"GET".equals(exchange.getRequestMethod())) return;
+            
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            params.remove("property");
+            params.putIfAbsent("limit", "50");
+            BookingQuery bookingQuery;
+            try {
+                bookingQuery = BookingQuery.fromParams(params);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            
+            // Start every property before waiting on any
+            List<String> ids = new ArrayList<>(node.directory.propertyIds());
+            List<CompletableFuture<byte[]>> pages = new ArrayList<>();
+            for (String id : ids) {
+                pages.add(search(id, params, bookingQuery));
+            }
+            
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+            JsonWriter json = JsonWriter.forExchange(exchange, 200);
+            json.beginObject().field("success", true).name("results").beginArray();
+            for (int i = 0; i < ids.size(); i++) {
+                json.beginObject().field("property", ids.get(i));
+                try {
+                    byte[] page = pages.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    json.name("page").rawValue(page);
+                } catch (ExecutionException e) {
+                    json.field("error", e.getCause().getMessage());
+                } catch (TimeoutException e) {
+                    json.field("error", "Timed out");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    json.field("error", "Interrupted");
+                }
+                json.endObject();
+            }
+            json.endArray().endObject().finish();
+        }
+        
+        private CompletableFuture<byte[]> search(String id, Map<String, String> params, BookingQuery bookingQuery) {
+            Property property = node.acquire(id);
+            if (property != null) {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        JsonWriter page = JsonWriter.forBuffer();
+                        BookingsListHandler.writePage(page, property.engine, bookingQuery);
+                        return page.toByteArray();
+                    } finally {
+                        property.release();
+                    }
+                });
+            }
+            
+            String owner = node.directory.owner(id);
+            if (owner == null || owner.equals(node.url) || owner.equals(PropertyDirectory.MOVING)) {
+                return CompletableFuture.failedFuture(new IOException("Property is not available"));
+            }
+            StringBuilder uri = new StringBuilder(owner).append("/api/bookings?property=").append(id);
+            params.forEach((name, value) -> uri.append('&').append(URLEncoder.encode(name, StandardCharsets.UTF_8))
+                .append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8)));
+            HttpRequest request = HttpRequest.newBuilder(URI.create(uri.toString()))
+                .timeout(Duration.ofMillis(TIMEOUT_MILLIS))
+                .build();
+            return node.client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new CompletionException(new IOException("Node answered " + response.statusCode()));
+                }
+                return response.body();
+            });
+        }
+    }
+    
+    /**
+     * Streams every booking matching the optional filters as JSON or CSV using chunked
+     * encoding, without materialising the result.
+     */
+    static class BookingsExportHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            setCORSHeaders(exchange);
+            
+            if ("GET".equals(exchange.getRequestMethod())) {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                BookingQuery bookingQuery;
+                try {
+                    bookingQuery = BookingQuery.fromParams(params);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                
+                if ("csv".equals(params.get("format"))) {
+                    exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
+                    exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"bookings.csv\"");
+                    exchange.sendResponseHeaders(200, 0);
+                    try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 64 * 1024)) {
+                        out.write("bookingId,name,roomType,roomNumber,checkIn,checkOut,guests,nights,totalPrice\r\n");
+                        for (Booking booking : engine.bookings()) {
+                            if (!bookingQuery.matches(booking)) continue;
+                            out.write(booking.id + "," + csv(booking.name) + "," + csv(booking.roomTypeName()) + ","
+                                + booking.roomNumber + "," + booking.checkIn() + "," + booking.checkOut() + ","
+                                + booking.guests + "," + booking.nights() + "," + booking.totalPrice + "\r\n");
+                        }
+                    }
+                    return;
+                }
+                
+                exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"bookings.json\"");
+                JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                json.beginArray();
+                for (Booking booking : engine.bookings()) {
+                    if (bookingQuery.matches(booking)) {
+                        writeBooking(json, booking);
+                    }
+                }
+                json.endArray().finish();
+            }
+        }
+        
+        private static String csv(String value) {
+            if (value == null) return "";
+            if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+    
+    static class DeleteBookingHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                String query = br.readLine();
+                
+                Map<String, String> params = parseQuery(query);
+                int bookingId;
+                try {
+                    bookingId = intParam(params, "bookingId");
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                
+                boolean removed = engine.delete(bookingId) != null;
+                if (!engine.awaitDurable()) {
+                    sendError(exchange, 500, "The change could not be saved");
+                    return;
+                }
+                
+                JsonWriter.forExchange(exchange, 200).beginObject()
+                    .field("success", removed)
+                    .field("message", removed ? "Booking deleted successfully" : "Booking not found")
+                    .endObject()
+                    .finish();
+                
+                if (removed) {
+                    AsyncLog.info("🗑️ Booking deleted: #", bookingId);
+                }
+            }
+        }
+    }
+    
+    static class UpdateBookingHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            BookingEngine engine = property(exchange).engine;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                setCORSHeaders(exchange);
+                
+                InputStreamReader isr = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr);
+                String query = br.readLine();
+                
+                Map<String, String> params = parseQuery(query);
+                int bookingId;
+                int roomNumber;
+                try {
+                    bookingId = intParam(params, "bookingId");
+                    roomNumber = intParam(params, "roomNumber", -1);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+                
+                if (engine.contains(bookingId)) {
+                    Booking booking;
+                    try {
+                        booking = engine.update(bookingId, params.get("name"), params.get("checkin"),
+                            params.get("checkout"), params.get("guests"), params.get("roomType"), roomNumber);
+                    } catch (IllegalArgumentException e) {
+                        sendError(exchange, 400, e.getMessage());
+                        return;
+                    }
+                    
+                    if (booking == null) {
+                        sendError(exchange, 200, "No rooms available for selected dates");
+                        return;
+                    }
+                    if (!engine.awaitDurable()) {
+                        sendError(exchange, 500, "The change could not be saved");
+                        return;
+                    }
+                    
+                    JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                    writeBooking(json, booking);
+                    json.finish();
+                    
+                    AsyncLog.info("✏️ Booking updated: ", booking);
+                } else {
+                    sendError(exchange, 404, "Booking not found");
+                }
+            }
+        }
+    }
+    
+    /**
+     * POST /api/rooms/repack[?roomType=] reassigns rooms of stays that start after today so
+     * free nights gather in whole rooms (BookingEngine.repack), for every room type unless
+     * one is given. Moved bookings reach the journal and event streams as updates.
+     */
+    static class RepackHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            if (!"POST".equals(exchange.getRequestMethod())) return;
+            
+            Property property = property(exchange);
+            String roomType = parseQuery(exchange.getRequestURI().getRawQuery()).get("roomType");
+            if (roomType != null && !property.inventory.containsKey(roomType)) {
+                sendError(exchange, 400, "Unknown room type");
+                return;
+            }
+            
+            int today = (int) LocalDate.now().toEpochDay();
+            int moved = 0;
+            for (String type : roomType != null ? Collections.singleton(roomType) : property.inventory.keySet()) {
+                moved += property.engine.repack(type, today);
+            }
+            if (!property.engine.awaitDurable()) {
+                sendError(exchange, 500, "The change could not be saved");
+                return;
+            }
+            
+            JsonWriter.forExchange(exchange, 200).beginObject()
+                .field("success", true)
+                .field("moved", moved)
+                .endObject()
+                .finish();
+            AsyncLog.info("🧩 Rooms repacked, bookings moved: ", moved);
+        }
+    }
+    
+    static class RoomAvailabilityHandler implements HttpHandler {
+        private static final int MAX_RANGE_DAYS = 366;
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            
+            String query = exchange.getRequestURI().getQuery();
+            Map<String, String> params = parseQuery(query);
+            
+            // ?from=&to= returns one entry per day of the range in a single response
+            if (params.containsKey("from") && params.containsKey("to")) {
+                long fromDay = LocalDate.parse(params.get("from")).toEpochDay();
+                long toDay = LocalDate.parse(params.get("to")).toEpochDay();
+                if (toDay < fromDay || toDay - fromDay >= MAX_RANGE_DAYS) {
+                    sendError(exchange, 400, "Date range must span 1 to " + MAX_RANGE_DAYS + " days");
+                    return;
+                }
+                
+                JsonWriter json = JsonWriter.forExchange(exchange, 200);
+                json.beginArray();
+                for (int day = (int) fromDay; day <= toDay; day++) {
+                    json.beginObject().dateField("date", day).name("roomTypes");
+                    writeDay(json, property(exchange), day);
+                    json.endObject();
+                }
+                json.endArray().finish();
+                return;
+            }
+            
+            String date = params.get("date");
+            if (date == null) {
+                date = LocalDate.now().toString();
+            }
+            
+            JsonWriter json = JsonWriter.forExchange(exchange, 200);
+            writeDay(json, property(exchange), (int) LocalDate.parse(date).toEpochDay());
+            json.finish();
+        }
+        
+        private void writeDay(JsonWriter json, Property property, int day) {
+            BookingEngine engine = property.engine;
+            OccupancyGrid grid = engine.grid;
+            json.beginArray();
+            
+            for (Map.Entry<String, RoomInfo> entry : property.inventory.entrySet()) {
+                String roomType = entry.getKey();
+                RoomInfo info = entry.getValue();
+                int slotBase = grid.slotBase(roomType);
+                
+                List<RoomSlot> slots = new ArrayList<>();
+                for (int i = 1; i <= info.totalRooms; i++) {
+                    int bookingId = grid.bookingAt(day, slotBase + i - 1);
+                    boolean isBooked = bookingId != 0;
+                    String guestName = isBooked ? engine.guestName(bookingId) : "";
+                    slots.add(new RoomSlot(i, isBooked, guestName));
+                }
+                
+                json.beginObject()
+                    .field("roomType", roomType)
+                    .field("totalRooms", info.totalRooms)
+                    .field("price", info.pricePerNight)
+                    .name("slots");
+                writeSlots(json, slots);
+                json.endObject();
+            }
+            json.endArray();
+        }
+        
+        private void writeSlots(JsonWriter json, List<RoomSlot> slots) {
+            json.beginArray();
+            for (RoomSlot slot : slots) {
+                json.beginObject()
+                    .field("roomNumber", slot.roomNumber)
+                    .field("isBooked", slot.isBooked)
+                    .field("guestName", slot.guestName)
+                    .endObject();
+            }
+            json.endArray();
+        }
+    }
+    
+    /**
+     * GET /api/rooms/search?checkin=&checkout=[&roomType=][&rooms=1][&flex=0] returns the
+     * free rooms of each room type (or just roomType) for the stay, and with flex=N the
+     * stays of the same length shifted up to N days either way, closest first, with the
+     * types that still have the rooms asked for on them. freeRooms counts the rooms free
+     * for the whole stay (BookingEngine.roomsFreeForStay): the per-night AvailabilityIndex
+     * rules out sold-out types and dates in O(log days) whatever the number of bookings,
+     * and only the rest are counted room by room.
+     */
+    static class RoomSearchHandler implements HttpHandler {
+        private static final int MAX_FLEX = 14;
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            if (!"GET".equals(exchange.getRequestMethod())) return;
+            
+            Property property = property(exchange);
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            int checkInDay = Integer.MIN_VALUE;
+            int checkOutDay = 0;
+            int rooms = 0;
+            int flex = 0;
+            try {
+                if (params.containsKey("checkin") && params.containsKey("checkout")) {
+                    checkInDay = BookingEngine.epochDay(params.get("checkin"));
+                    checkOutDay = BookingEngine.epochDay(params.get("checkout"));
+                    rooms = Integer.parseInt(params.getOrDefault("rooms", "1"));
+                    flex = Integer.parseInt(params.getOrDefault("flex", "0"));
+                }
+            } catch (IllegalArgumentException e) {
+                checkInDay = Integer.MIN_VALUE;
+            }
+            if (checkInDay == Integer.MIN_VALUE || checkOutDay <= checkInDay || checkOutDay - checkInDay > BookingEngine.MAX_NIGHTS
+                    || rooms < 1 || flex < 0 || flex > MAX_FLEX) {
+                sendError(exchange, 400, "Need checkin before checkout (at most "
+                    + BookingEngine.MAX_NIGHTS + " nights), rooms >= 1 and flex 0 to " + MAX_FLEX);
+                return;
+            }
+            String roomType = params.get("roomType");
+            if (roomType != null && !property.inventory.containsKey(roomType)) {
+                sendError(exchange, 400, "Unknown room type");
+                return;
+            }
+            Collection<String> roomTypes = roomType != null ? Collections.singleton(roomType) : property.inventory.keySet();
+            BookingEngine engine = property.engine;
+            int nights = checkOutDay - checkInDay;
+            
+            JsonWriter json = JsonWriter.forExchange(exchange, 200);
+            json.beginObject()
+                .field("success", true)
+                .dateField("checkIn", checkInDay)
+                .dateField("checkOut", checkOutDay)
+                .field("nights", nights)
+                .name("roomTypes").beginArray();
+            for (String type : roomTypes) {
+                RoomInfo info = property.inventory.get(type);
+                json.beginObject()
+                    .field("roomType", type)
+                    .field("price", info.pricePerNight)
+                    .field("totalRooms", info.totalRooms)
+                    .field("freeRooms", engine.roomsFreeForStay(type, checkInDay, checkOutDay))
+                    .field("totalPrice", (long) info.pricePerNight * nights)
+                    .endObject();
+            }
+            json.endArray().name("suggestions").beginArray();
+            
+            // Never suggest arriving in the past
+            int today = (int) LocalDate.now().toEpochDay();
+            for (int step = 1; step <= 2 * flex; step++) {
+                int shift = step % 2 == 1 ? -(step + 1) / 2 : step / 2;
+                int from = checkInDay + shift;
+                if (from < today) continue;
+                List<String> open = new ArrayList<>();
+                List<Integer> free = new ArrayList<>();
+                for (String type : roomTypes) {
+                    int count = engine.roomsFreeForStay(type, from, from + nights);
+                    if (count >= rooms) {
+                        open.add(type);
+                        free.add(count);
+                    }
+                }
+                if (open.isEmpty()) continue;
+                
+                json.beginObject()
+                    .dateField("checkIn", from)
+                    .dateField("checkOut", from + nights)
+                    .field("shift", shift)
+                    .name("roomTypes").beginArray();
+                for (int i = 0; i < open.size(); i++) {
+                    json.beginObject()
+                        .field("roomType", open.get(i))
+                        .field("freeRooms", free.get(i))
+                        .endObject();
+                }
+                json.endArray().endObject();
+            }
+            json.endArray().endObject().finish();
+        }
+    }
+    
+    /**
+     * GET /api/reports?from=&to=&period=day|week|month[&roomType=][&source=scan] reports
+     * occupancy %, ADR (revenue per sold room-night), RevPAR (revenue per available
+     * room-night) and revenue per room type over [from, to]. Defaults to month-to-date by
+     * day. Figures come from the incrementally kept rollups unless source=scan.
+     */
+    static class ReportsHandler implements HttpHandler {
+        private static final int MAX_DAYS = 3660;
+        private static final int MAX_DAYS_BY_DAY = 366;
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            if (!"GET".equals(exchange.getRequestMethod())) return;
+            
+            ReportEngine reports = property(exchange).reports;
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            LocalDate today = LocalDate.now();
+            String period = params.getOrDefault("period", "day");
+            int fromDay;
+            int toDay;
+            try {
+                fromDay = BookingEngine.epochDay(params.getOrDefault("from", today.withDayOfMonth(1).toString()));
+                toDay = BookingEngine.epochDay(params.getOrDefault("to", today.toString()));
+            } catch (IllegalArgumentException e) {
+                fromDay = Integer.MIN_VALUE;
+                toDay = Integer.MIN_VALUE;
+            }
+            int maxDays = period.equals("day") ? MAX_DAYS_BY_DAY : MAX_DAYS;
+            if (!Arrays.asList("day", "week", "month").contains(period) || fromDay == Integer.MIN_VALUE
+                    || toDay == Integer.MIN_VALUE || toDay < fromDay || toDay - fromDay >= maxDays) {
+                sendError(exchange, 400, "Need from <= to within " + maxDays + " days and period day, week or month");
+                return;
+            }
+            int column = -1;
+            if (params.containsKey("roomType")) {
+                column = Arrays.asList(reports.roomTypes).indexOf(params.get("roomType"));
+                if (column == -1) {
+                    sendError(exchange, 400, "Unknown room type");
+                    return;
+                }
+            }
+            
+            boolean scan = "scan".equals(params.get("source"));
+            long start = System.nanoTime();
+            long[] totals = scan ? reports.scan(fromDay, toDay) : reports.rollup(fromDay, toDay);
+            long computeMicros = (System.nanoTime() - start) / 1000;
+            
+            JsonWriter json = JsonWriter.forExchange(exchange, 200);
+            json.beginObject()
+                .field("success", true)
+                .dateField("from", fromDay)
+                .dateField("to", toDay)
+                .field("period", period)
+                .field("source", scan ? "scan" : "rollup")
+                .field("computeMicros", computeMicros);
+            reports.write(json, totals, fromDay, toDay, period, column);
+            json.endObject().finish();
+        }
+    }
+    
+    /**
+     * GET /api/metrics: every counter, gauge and latency summary in the Prometheus text format.
+     */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                byte[] body = metrics.render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        }
+    }
+    
+    // GET /api/events?property= hands the exchange to that property's stream
+    static class EventsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            property(exchange).events.handle(exchange);
+        }
+    }
+    
+    /**
+     * GET /api/events streams booking and room-slot changes as server-sent events, so open
+     * dashboards apply deltas instead of refetching every booking.
+     *
+     * The booking path only marks what changed in each subscriber's pending set: booking
+     * ids, and per room slot the range of days touched. The first mark queues a flush of
+     * that subscriber on WRITERS, shared by every stream, which drains the set and renders
+     * the current state, so repeated changes to one booking or room coalesce into one event.
+     * A subscriber has at most one flush queued or running and WRITERS grows a thread for
+     * each flush that blocks, so a slow browser only delays its own stream, while idle
+     * streams hold no thread at all. If a subscriber falls more than MAX_PENDING bookings
+     * behind, its set is dropped and it is sent a resync event telling it to refetch.
+     *
+     * Events: booking (created or updated, with the booking as /api/bookings returns it),
+     * deleted ({bookingId}), slot ({roomType, roomNumber, from, to, runs}, where runs cover
+     * [from, to) with the booking holding each stretch, 0 when free and the negated hold id
+     * when held) and resync. Holds only ever appear in slot events.
+     */
+    static class BookingEvents implements BookingListener, HttpHandler {
+        private static final int MAX_SUBSCRIBERS = 64;
+        private static final int MAX_PENDING = 4096;
+        private static final long HEARTBEAT_MILLIS = 15_000;
+        private static final byte CREATED = 1;
+        private static final byte UPDATED = 2;
+        private static final byte DELETED = 3;
+        private static final AtomicInteger WRITER_IDS = new AtomicInteger();
+        // Threads exist only while a flush runs and are reused for a minute after
+        private static final ThreadPoolExecutor WRITERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread t = new Thread(r, "events-" + WRITER_IDS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        // Queues heartbeats, so proxies keep idle streams open and dead clients are found
+        private static final ScheduledExecutorService HEARTBEATS = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "events-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        
+        private final BookingEngine engine;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final ScheduledFuture<?> heartbeat;
+        private volatile boolean closed;
+        final LongAdder resyncs = new LongAdder();
+        
+        BookingEvents(BookingEngine engine) {
+            this.engine = engine;
+            this.heartbeat = HEARTBEATS.scheduleAtFixedRate(() -> {
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.heartbeat();
+                }
+            }, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCORSHeaders(exchange);
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use GET");
+                return;
+            }
+            if (closed || subscribers.size() >= MAX_SUBSCRIBERS) {
+                sendError(exchange, 503, "Too many event streams");
+                return;
+            }
+            
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            
+            // The stream outlives this call: flushes on WRITERS write it, freeing the worker
+            Subscriber subscriber = new Subscriber(exchange);
+            try {
+                subscriber.out.write("retry: 3000\n\n".getBytes(StandardCharsets.UTF_8));
+                subscriber.out.flush();
+            } catch (IOException e) {
+                exchange.close();
+                return;
+            }
+            subscribers.add(subscriber);
+            // close() may have run before the add and missed this stream
+            if (closed) subscriber.schedule();
+        }
+        
+        long subscribers() {
+            return subscribers.size();
+        }
+        
+        /**
+         * Ends every stream; browsers reconnect on their own once the server is back.
+         */
+        void close() {
+            closed = true;
+            heartbeat.cancel(false);
+            for (Subscriber subscriber : subscribers) {
+                subscriber.schedule();
+            }
+        }
+        
+        @Override
+        public void bookingCreated(Booking booking) {
+            publish(booking, CREATED);
+        }
+        
+        @Override
+        public void bookingUpdated(Booking before, Booking after) {
+            publish(after, UPDATED);
+            if (before.roomType != after.roomType || before.roomNumber != after.roomNumber
+                    || before.checkInDay != after.checkInDay || before.checkOutDay != after.checkOutDay) {
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.slotChanged(before);
+                }
+            }
+        }
+        
+        @Override
+        public void bookingDeleted(Booking booking) {
+            publish(booking, DELETED);
+        }
+        
+        @Override
+        public void holdChanged(Booking hold) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.slotChanged(hold);
+            }
+        }
+        
+        private void publish(Booking booking, byte kind) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.bookingChanged(booking.id, kind);
+                subscriber.slotChanged(booking);
+            }
+        }
+        
+        /**
+         * Days [from, to) of one room whose occupancy changed since the last flush.
+         */
+        private static final class SlotRange {
+            final byte roomType;
+            final int roomNumber;
+            int from;
+            int to;
+            
+            SlotRange(byte roomType, int roomNumber, int from, int to) {
+                this.roomType = roomType;
+                this.roomNumber = roomNumber;
+                this.from = from;
+                this.to = to;
+            }
+        }
+        
+        private final class Subscriber {
+            private final HttpExchange exchange;
+            // Written only by the one flush that may run at a time
+            final OutputStream out;
+            // Guarded by this; swapped out wholesale by flush()
+            private LinkedHashMap<Integer, Byte> bookings = new LinkedHashMap<>();
+            private LinkedHashMap<Integer, SlotRange> slots = new LinkedHashMap<>();
+            private boolean resync;
+            private boolean heartbeat;
+            // A flush is queued or running; it re-checks the pending set before clearing this
+            private boolean scheduled;
+            private boolean ended;
+            
+            Subscriber(HttpExchange exchange) {
+                this.exchange = exchange;
+                this.out = new BufferedOutputStream(exchange.getResponseBody(), 16 * 1024);
+            }
+            
+            synchronized void bookingChanged(int bookingId, byte kind) {
+                if (resync) return;
+                Byte pending = bookings.get(bookingId);
+                if (pending == null) {
+                    if (bookings.size() >= MAX_PENDING) {
+                        bookings = new LinkedHashMap<>();
+                        slots = new LinkedHashMap<>();
+                        resync = true;
+                        resyncs.increment();
+                        schedule();
+                        return;
+                    }
+                    bookings.put(bookingId, kind);
+                } else if (kind == DELETED) {
+                    bookings.put(bookingId, DELETED);
+                }
+                // A created booking that is then updated is still news as "created"
+                schedule();
+            }
+            
+            synchronized void slotChanged(Booking booking) {
+                if (resync) return;
+                int key = (booking.roomType << 16) | booking.roomNumber;
+                SlotRange range = slots.get(key);
+                if (range == null) {
+                    slots.put(key, new SlotRange(booking.roomType, booking.roomNumber, booking.checkInDay, booking.checkOutDay));
+                } else {
+                    range.from = Math.min(range.from, booking.checkInDay);
+                    range.to = Math.max(range.to, booking.checkOutDay);
+                }
+                schedule();
+            }
+            
+            synchronized void heartbeat() {
+                heartbeat = true;
+                schedule();
+            }
+            
+            synchronized void schedule() {
+                if (scheduled || ended) return;
+                scheduled = true;
+                WRITERS.execute(this::flush);
+            }
+            
+            /**
+             * Writes what is pending until nothing is, then returns the thread to WRITERS.
+             */
+            private void flush() {
+                try {
+                    while (true) {
+                        Map<Integer, Byte> changedBookings;
+                        Map<Integer, SlotRange> changedSlots;
+                        boolean sendResync;
+                        boolean sendHeartbeat;
+                        synchronized (this) {
+                            if (closed) break;
+                            if (bookings.isEmpty() && slots.isEmpty() && !resync && !heartbeat) {
+                                scheduled = false;
+                                return;
+                            }
+                            changedBookings = bookings;
+                            changedSlots = slots;
+                            sendResync = resync;
+                            sendHeartbeat = heartbeat;
+                            if (!changedBookings.isEmpty()) bookings = new LinkedHashMap<>();
+                            if (!changedSlots.isEmpty()) slots = new LinkedHashMap<>();
+                            resync = false;
+                            heartbeat = false;
+                        }
+                        
+                        if (sendResync) {
+                            out.write("event: resync\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8));
+                        } else if (sendHeartbeat && changedBookings.isEmpty() && changedSlots.isEmpty()) {
+                            // Comment line: keeps proxies from timing out and finds dead clients
+                            out.write(":\n\n".getBytes(StandardCharsets.UTF_8));
+                        }
+                        for (Map.Entry<Integer, Byte> change : changedBookings.entrySet()) {
+                            writeBookingEvent(out, change.getKey(), change.getValue());
+                        }
+                        for (SlotRange range : changedSlots.values()) {
+                            writeSlotEvent(out, range);
+                        }
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // Browser went away
+                }
+                end();
+            }
+            
+            private void end() {
+                synchronized (this) {
+                    ended = true;
+                }
+                subscribers.remove(this);
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Already gone
+                }
+                exchange.close();
+            }
+            
+            private void writeBookingEvent(OutputStream out, int bookingId, byte kind) throws IOException {
+                Booking booking = kind == DELETED ? null : engine.find(bookingId);
+                JsonWriter json = JsonWriter.forBuffer();
+                if (booking == null) {
+                    out.write("event: deleted\ndata: ".getBytes(StandardCharsets.UTF_8));
+                    json.beginObject().field("bookingId", bookingId).endObject();
+                } else {
+                    out.write("event: booking\ndata: ".getBytes(StandardCharsets.UTF_8));
+                    writeBooking(json, booking);
+                }
+                out.write(json.toByteArray());
+                out.write('\n');
+                out.write('\n');
+            }
+            
+            private void writeSlotEvent(OutputStream out, SlotRange range) throws IOException {
+                String roomType = RoomTypes.name(range.roomType);
+                int slot = engine.grid.slot(roomType, range.roomNumber);
+                if (slot == -1) return;
+                
+                JsonWriter json = JsonWriter.forBuffer();
+                json.beginObject()
+                    .field("roomType", roomType)
+                    .field("roomNumber", range.roomNumber)
+                    .dateField("from", range.from)
+                    .dateField("to", range.to)
+                    .name("runs").beginArray();
+                int runStart = range.from;
+                int runBooking = engine.grid.bookingAt(range.from, slot);
+                for (int day = range.from + 1; day <= range.to; day++) {
+                    // Holds are negative ids, so the end marker is one no cell can hold
+                    int bookingId = day < range.to ? engine.grid.bookingAt(day, slot) : Integer.MIN_VALUE;
+                    if (bookingId == runBooking) continue;
+                    json.beginObject()
+                        .dateField("from", runStart)
+                        .dateField("to", day)
+                        .field("bookingId", runBooking);
+                    if (runBooking != 0) {
+                        json.field("guestName", engine.guestName(runBooking));
+                    }
+                    json.endObject();
+                    runStart = day;
+                    runBooking = bookingId;
+                }
+                json.endArray().endObject();
+                
+                out.write("event: slot\ndata: ".getBytes(StandardCharsets.UTF_8));
+                out.write(json.toByteArray());
+                out.write('\n');
+                out.write('\n');
+            }
+        }
+    }
+    
+    // Helper methods
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq == -1) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+    
+    private static Booking createBookingFromParams(BookingEngine engine, Map<String, String> params) {
+        String name = params.get("name");
+        String checkIn = params.get("checkin");
+        String checkOut = params.get("checkout");
+        String guests = params.get("guests");
+        String roomType = params.get("roomType");
+        
+        return engine.book(name, checkIn, checkOut, guests, roomType);
+    }
+    
+    static void writeBooking(JsonWriter json, Booking booking) {
+        json.beginObject()
+            .field("success", true)
+            .field("bookingId", booking.id)
+            .field("name", booking.name)
+            .field("roomType", booking.roomTypeName())
+            .field("roomNumber", booking.roomNumber)
+            .dateField("checkIn", booking.checkInDay)
+            .dateField("checkOut", booking.checkOutDay)
+            .field("guests", booking.guests)
+            .field("nights", booking.nights())
+            .field("totalPrice", booking.totalPrice)
+            .endObject();
+    }
+    
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            String[] pairs = query.split("&");
+            for (String pair : pairs) {
+                String[] keyValue = pair.split("=");
+                if (keyValue.length == 2) {
+                    try {
+                        String key = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8);
+                        String value = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
+                        params.put(key, value);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        return params;
+    }
+    
+    /**
+     * The integer value of a parameter, or defaultValue if it is absent. Throws
+     * IllegalArgumentException if it is present but not an integer.
+     */
+    static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+    
+    /**
+     * Like intParam, but a missing parameter is an IllegalArgumentException too.
+     */
+    static int intParam(Map<String, String> params, String name) {
+        if (!params.containsKey(name)) throw new IllegalArgumentException("Missing " + name);
+        return intParam(params, name, 0);
+    }
+    
+    private static void setCORSHeaders(HttpExchange exchange) {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json");
+        headers.set("Access-Control-Allow-Origin", "*");
+        headers.set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        headers.set("Access-Control-Allow-Headers", "Content-Type");
+    }
+    
+    static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+        JsonWriter.forExchange(exchange, statusCode).beginObject()
+            .field("success", false)
+            .field("message", message)
+            .endObject()
+            .finish();
+    }
+    
+    /**
+     * Streaming JSON writer that encodes UTF-8 straight into a reusable per-thread buffer.
+     * Small responses go out with a fixed Content-Length; once the buffer fills up the
+     * response switches to chunked encoding and the buffer is flushed as it goes.
+     */
+    static class JsonWriter {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final ThreadLocal<JsonWriter> WRITERS = ThreadLocal.withInitial(JsonWriter::new);
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+        private boolean[] needsComma = new boolean[16];
+        private int depth;
+        private boolean afterName;
+        private HttpExchange exchange;
+        private int statusCode;
+        private OutputStream out;
+        
+        static JsonWriter forExchange(HttpExchange exchange, int statusCode) {
+            JsonWriter writer = WRITERS.get();
+            writer.reset();
+            writer.exchange = exchange;
+            writer.statusCode = statusCode;
+            return writer;
+        }
+        
+        /**
+         * A writer that flushes into target whenever the buffer fills; call flush() at the end.
+         */
+        static JsonWriter forStream(OutputStream target) {
+            JsonWriter writer = WRITERS.get();
+            writer.reset();
+            writer.out = target;
+            return writer;
+        }
+        
+        private void reset() {
+            if (buffer.length > BUFFER_SIZE * 16) {
+                buffer = new byte[BUFFER_SIZE];
+            }
+            count = 0;
+            depth = 0;
+            needsComma[0] = false;
+            afterName = false;
+            exchange = null;
+            out = null;
+        }
+        
+        JsonWriter beginObject() {
+            separator();
+            put((byte) '{');
+            push();
+            return this;
+        }
+        
+        JsonWriter endObject() {
+            depth--;
+            put((byte) '}');
+            return this;
+        }
+        
+        JsonWriter beginArray() {
+            separator();
+            put((byte) '[');
+            push();
+            return this;
+        }
+        
+        JsonWriter endArray() {
+            depth--;
+            put((byte) ']');
+            return this;
+        }
+        
+        JsonWriter name(String name) {
+            separator();
+            string(name);
+            put((byte) ':');
+            afterName = true;
+            return this;
+        }
+        
+        JsonWriter value(String value) {
+            separator();
+            if (value == null) {
+                ascii("null");
+            } else {
+                string(value);
+            }
+            return this;
+        }
+        
+        JsonWriter value(long value) {
+            separator();
+            number(value);
+            return this;
+        }
+        
+        JsonWriter value(boolean value) {
+            separator();
+            ascii(value ? "true" : "false");
+            return this;
+        }
+        
+        JsonWriter field(String name, String value) {
+            return name(name).value(value);
+        }
+        
+        JsonWriter field(String name, long value) {
+            return name(name).value(value);
+        }
+        
+        JsonWriter field(String name, boolean value) {
+            return name(name).value(value);
+        }
+        
+        /**
+         * Writes an epoch day as an ISO-8601 date string without going through LocalDate.
+         */
+        JsonWriter dateValue(int epochDay) {
+            separator();
+            // Days to civil date, after Howard Hinnant's days_from_civil inverse
+            int z = epochDay + 719468;
+            int era = (z >= 0 ? z : z - 146096) / 146097;
+            int doe = z - era * 146097;
+            int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            int mp = (5 * doy + 2) / 153;
+            int day = doy - (153 * mp + 2) / 5 + 1;
+            int month = mp < 10 ? mp + 3 : mp - 9;
+            int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+            if (year < 0 || year > 9999) {
+                string(LocalDate.ofEpochDay(epochDay).toString());
+                return this;
+            }
+            ensure(12);
+            buffer[count++] = '"';
+            buffer[count++] = (byte) ('0' + year / 1000);
+            buffer[count++] = (byte) ('0' + year / 100 % 10);
+            buffer[count++] = (byte) ('0' + year / 10 % 10);
+            buffer[count++] = (byte) ('0' + year % 10);
+            buffer[count++] = '-';
+            buffer[count++] = (byte) ('0' + month / 10);
+            buffer[count++] = (byte) ('0' + month % 10);
+            buffer[count++] = '-';
+            buffer[count++] = (byte) ('0' + day / 10);
+            buffer[count++] = (byte) ('0' + day % 10);
+            buffer[count++] = '"';
+            return this;
+        }
+        
+        JsonWriter dateField(String name, int epochDay) {
+            return name(name).dateValue(epochDay);
+        }
+        
+        /**
+         * Writes value rounded to two decimals; NaN and infinities, which JSON cannot hold, as 0.
+         */
+        JsonWriter value(double value) {
+            separator();
+            ascii(Double.isFinite(value) ? Double.toString(Math.round(value * 100) / 100.0) : "0.0");
+            return this;
+        }
+        
+        JsonWriter field(String name, double value) {
+            return name(name).value(value);
+        }
+        
+        /**
+         * Writes already-encoded JSON, such as a page rendered on another thread, as the next value.
+         */
+        JsonWriter rawValue(byte[] encoded) {
+            separator();
+            ensure(encoded.length);
+            System.arraycopy(encoded, 0, buffer, count, encoded.length);
+            count += encoded.length;
+            return this;
+        }
+        
+        /**
+         * A writer that only buffers, for callers that want the encoded bytes themselves.
+         */
+        static JsonWriter forBuffer() {
+            JsonWriter writer = WRITERS.get();
+            writer.reset();
+            return writer;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+        
+        /**
+         * Sends whatever is buffered and completes the exchange.
+         */
+        void finish() throws IOException {
+            try {
+                if (out == null) {
+                    exchange.sendResponseHeaders(statusCode, count);
+                    out = exchange.getResponseBody();
+                }
+                out.write(buffer, 0, count);
+                out.close();
+            } finally {
+                exchange = null;
+                out = null;
+                count = 0;
+            }
+        }
+        
+        void flush() throws IOException {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        
+        private void push() {
+            depth++;
+            if (depth == needsComma.length) {
+                needsComma = Arrays.copyOf(needsComma, depth * 2);
+            }
+            needsComma[depth] = false;
+        }
+        
+        private void separator() {
+            if (afterName) {
+                afterName = false;
+                return;
+            }
+            if (needsComma[depth]) {
+                put((byte) ',');
+            }
+            needsComma[depth] = true;
+        }
+        
+        private void number(long value) {
+            ensure(20);
+            if (value < 0) {
+                if (value == Long.MIN_VALUE) {
+                    ascii(Long.toString(value));
+                    return;
+                }
+                buffer[count++] = '-';
+                value = -value;
+            }
+            int start = count;
+            do {
+                buffer[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = count - 1; i < j; i++, j--) {
+                byte tmp = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = tmp;
+            }
+        }
+        
+        private void string(String value) {
+            put((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                ensure(12);
+                if (c == '"' || c == '\\') {
+                    buffer[count++] = '\\';
+                    buffer[count++] = (byte) c;
+                } else if (c < 0x20) {
+                    buffer[count++] = '\\';
+                    switch (c) {
+                        case '\n': buffer[count++] = 'n'; break;
+                        case '\r': buffer[count++] = 'r'; break;
+                        case '\t': buffer[count++] = 't'; break;
+                        case '\b': buffer[count++] = 'b'; break;
+                        case '\f': buffer[count++] = 'f'; break;
+                        default:
+                            buffer[count++] = 'u';
+                            buffer[count++] = '0';
+                            buffer[count++] = '0';
+                            buffer[count++] = HEX[c >> 4];
+                            buffer[count++] = HEX[c & 0xF];
+                    }
+                } else if (c < 0x80) {
+                    buffer[count++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[count++] = (byte) (0xC0 | (c >> 6));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[count++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    buffer[count++] = '?';
+                } else {
+                    buffer[count++] = (byte) (0xE0 | (c >> 12));
+                    buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            put((byte) '"');
+        }
+        
+        private void ascii(String value) {
+            ensure(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                buffer[count++] = (byte) value.charAt(i);
+            }
+        }
+        
+        private void put(byte b) {
+            ensure(1);
+            buffer[count++] = b;
+        }
+        
+        private void ensure(int needed) {
+            if (count + needed <= buffer.length) return;
+            
+            if (exchange != null || out != null) {
+                try {
+                    if (out == null) {
+                        // Too big for one buffer, switch to chunked encoding
+                        exchange.sendResponseHeaders(statusCode, 0);
+                        out = exchange.getResponseBody();
+                    }
+                    out.write(buffer, 0, count);
+                    count = 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (count + needed > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + needed));
+            }
+        }
+    }
+    
+    /**
+     * Executor handed to the HttpServer. Runs exchanges on virtual threads or on a bounded
+     * worker pool; when the pool's queue is full the exchange runs on the dispatcher thread
+     * with the shedding flag set, and LoadSheddingFilter answers it with 503 straight away.
+     */
+    static class ServerExecutor implements Executor {
+        static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> false);
+        
+        private final ExecutorService delegate;
+        private final ThreadPoolExecutor pool;
+        private final String description;
+        // Updated by LoadSheddingFilter, which sees each exchange exactly once
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder completed = new LongAdder();
+        final LongAdder shed = new LongAdder();
+        
+        private ServerExecutor(ExecutorService delegate, ThreadPoolExecutor pool, String description) {
+            this.delegate = delegate;
+            this.pool = pool;
+            this.description = description;
+        }
+        
+        static ServerExecutor create(String mode, int threads, int queueLimit) {
+            if ("dispatcher".equals(mode)) {
+                return null;
+            }
+            if ("virtual".equals(mode)) {
+                ExecutorService virtual = newVirtualThreadExecutor();
+                if (virtual != null) {
+                    return new ServerExecutor(virtual, null, "virtual threads (one per exchange)");
+                }
+                System.out.println("⚠️ Virtual threads need Java 21+, falling back to a worker pool");
+            }
+            
+            AtomicInteger threadId = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit),
+                r -> {
+                    Thread t = new Thread(r, "http-worker-" + threadId.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            return new ServerExecutor(pool, pool, "worker pool (" + threads + " threads, queue " + queueLimit + ")");
+        }
+        
+        private static ExecutorService newVirtualThreadExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+        
+        @Override
+        public void execute(Runnable exchange) {
+            try {
+                delegate.execute(exchange);
+            } catch (RejectedExecutionException e) {
+                SHEDDING.set(true);
+                try {
+                    exchange.run();
+                } finally {
+                    SHEDDING.set(false);
+                }
+            }
+        }
+        
+        String describe() {
+            return description;
+        }
+        
+        long queueDepth() {
+            return pool != null ? pool.getQueue().size() : 0;
+        }
+        
+        String stats() {
+            return String.format("📊 Requests in flight: %d, queue depth: %d, completed: %d, shed (503): %d",
+                inFlight.get(), queueDepth(), completed.sum(), shed.sum());
+        }
+        
+        void shutdown() {
+            delegate.shutdown();
+        }
+    }
+    
+    /**
+     * Sheds exchanges the executor could not queue and counts the ones it lets through.
+     */
+    static class LoadSheddingFilter extends Filter {
+        private final ServerExecutor executor;
+        
+        LoadSheddingFilter(ServerExecutor executor) {
+            this.executor = executor;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            if (!ServerExecutor.SHEDDING.get()) {
+                executor.inFlight.incrementAndGet();
+                try {
+                    chain.doFilter(exchange);
+                } finally {
+                    executor.inFlight.decrementAndGet();
+                    executor.completed.increment();
+                }
+                return;
+            }
+            
+            executor.shed.increment();
+            setCORSHeaders(exchange);
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendError(exchange, 503, "Server busy, please retry");
+        }
+        
+        @Override
+        public String description() {
+            return "Answers 503 for exchanges rejected by the worker pool";
+        }
+    }
+    
+    /**
+     * Token bucket per client address for one context, kept in GCRA form: a bucket is one
+     * AtomicLong holding the time at which it would be full again, so admitting a request
+     * is a single compare-and-set and there are no locks. A client may run up to burst
+     * requests ahead of its rate; past that it gets a 429 with Retry-After.
+     *
+     * A bucket whose refill time has passed is full, which is what a new bucket would be,
+     * so idle buckets are swept without changing any answer. The table is capped: clients
+     * that arrive while it is full of active buckets share one overflow bucket.
+     */
+    static class RateLimitFilter extends Filter {
+        // Paths are context paths, "*" covers every other context; rates are requests per second
+        static final String DEFAULT_LIMITS = "/api/login=1/5,/api/book=5/20,/api/book/batch=1/5,"
+            + "/api/bookings/update=5/20,/api/bookings/delete=5/20,/api/rooms/repack=1/2,/api/holds=5/20,"
+            + "/api/holds/confirm=5/20,*=100/200";
+        private static final int MAX_CLIENTS = 100_000;
+        private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+        
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final ConcurrentHashMap<InetAddress, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+        private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+        final LongAdder limited = new LongAdder();
+        
+        RateLimitFilter(double perSecond, int burst) {
+            this.intervalNanos = (long) (1e9 / perSecond);
+            this.toleranceNanos = intervalNanos * (Math.max(burst, 1) - 1);
+        }
+        
+        /**
+         * Parses "path=rate/burst,..." (e.g. "/api/login=0.5/5,*=100/200"); "off" disables limiting.
+         */
+        static Map<String, double[]> parseLimits(String spec) {
+            Map<String, double[]> limits = new HashMap<>();
+            if (spec.equals("off")) return limits;
+            for (String entry : spec.split(",")) {
+                int eq = entry.indexOf('=');
+                int slash = entry.indexOf('/', eq);
+                limits.put(entry.substring(0, eq).trim(), new double[] {
+                    Double.parseDouble(entry.substring(eq + 1, slash)), Double.parseDouble(entry.substring(slash + 1)) });
+            }
+            return limits;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long now = System.nanoTime();
+            long waitNanos = admit(bucket(exchange.getRemoteAddress().getAddress(), now), now);
+            if (waitNanos == 0) {
+                chain.doFilter(exchange);
+                return;
+            }
+            
+            limited.increment();
+            long retryAfter = Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000);
+            setCORSHeaders(exchange);
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfter));
+            sendError(exchange, 429, "Too many requests, retry in " + retryAfter + " s");
+        }
+        
+        /**
+         * Takes a token: 0 if the request may go ahead, otherwise how long until one is free.
+         */
+        private long admit(AtomicLong bucket, long now) {
+            while (true) {
+                long fullAt = bucket.get();
+                long start = fullAt - now > 0 ? fullAt : now;
+                long ahead = start - now;
+                if (ahead > toleranceNanos) {
+                    return ahead - toleranceNanos;
+                }
+                if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+        
+        private AtomicLong bucket(InetAddress client, long now) {
+            AtomicLong bucket = buckets.get(client);
+            if (bucket != null) return bucket;
+            
+            long due = nextSweep.get();
+            if (now - due >= 0 && nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+                // A request racing the sweep may spend a token in a removed, full bucket;
+                // its next request starts from a fresh full bucket, as it would have anyway
+                buckets.values().removeIf(idle -> idle.get() - now <= 0);
+            }
+            if (buckets.size() >= MAX_CLIENTS) {
+                return overflow;
+            }
+            return buckets.computeIfAbsent(client, c -> new AtomicLong(now));
+        }
+        
+        @Override
+        public String description() {
+            return "Per-client token bucket rate limit";
+        }
+    }
+    
+    /**
+     * Process-wide request and booking metrics, rendered for /api/metrics in the Prometheus
+     * text format. The request path only touches LongAdders and atomics, never a lock.
+     * Other components register their own counters and gauges as suppliers read at scrape time.
+     */
+    static class Metrics implements BookingListener {
+        private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+        
+        private final Map<String, EndpointMetrics> endpoints = new ConcurrentSkipListMap<>();
+        private final List<Sampled> sampled = new CopyOnWriteArrayList<>();
+        final LongAdder bookingsCreated = new LongAdder();
+        final LongAdder bookingsUpdated = new LongAdder();
+        final LongAdder bookingsDeleted = new LongAdder();
+        private final RateMeter bookingRate = new RateMeter();
+        
+        EndpointMetrics endpoint(String path) {
+            return endpoints.computeIfAbsent(path, EndpointMetrics::new);
+        }
+        
+        /**
+         * Registers a sampled counter; name may carry labels, as in name{property="main"}.
+         * Registering a name again replaces it, so a property reopened on this node after a
+         * move reports its new engine.
+         */
+        void counter(String name, String help, LongSupplier value) {
+            register(new Sampled(name, help, "counter", value));
+        }
+        
+        void gauge(String name, String help, LongSupplier value) {
+            register(new Sampled(name, help, "gauge", value));
+        }
+        
+        private synchronized void register(Sampled metric) {
+            sampled.removeIf(existing -> existing.name.equals(metric.name));
+            sampled.add(metric);
+        }
+        
+        @Override
+        public void bookingCreated(Booking booking) {
+            bookingsCreated.increment();
+            bookingRate.mark();
+        }
+        
+        @Override
+        public void bookingUpdated(Booking before, Booking after) {
+            bookingsUpdated.increment();
+        }
+        
+        @Override
+        public void bookingDeleted(Booking booking) {
+            bookingsDeleted.increment();
+        }
+        
+        String render() {
+            StringBuilder out = new StringBuilder(4096);
+            
+            header(out, "hotel_http_requests_total", "HTTP exchanges handled, by context and status class.", "counter");
+            for (EndpointMetrics endpoint : endpoints.values()) {
+                for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                    long count = endpoint.responses[statusClass].sum();
+                    if (count > 0 || statusClass == 2) {
+                        out.append("hotel_http_requests_total{path=\"").append(endpoint.path)
+                            .append("\",status=\"").append(statusClass).append("xx\"} ").append(count).append('\n');
+                    }
+                }
+            }
+            
+            header(out, "hotel_http_request_duration_seconds", "Time from entering the handler chain to its return.", "summary");
+            for (EndpointMetrics endpoint : endpoints.values()) {
+                long[] counts = endpoint.latency.snapshot();
+                for (double quantile : QUANTILES) {
+                    out.append("hotel_http_request_duration_seconds{path=\"").append(endpoint.path)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(LatencyHistogram.quantile(counts, quantile) / 1e9).append('\n');
+                }
+                out.append("hotel_http_request_duration_seconds_sum{path=\"").append(endpoint.path).append("\"} ")
+                    .append(endpoint.latency.totalNanos() / 1e9).append('\n');
+                out.append("hotel_http_request_duration_seconds_count{path=\"").append(endpoint.path).append("\"} ")
+                    .append(LatencyHistogram.total(counts)).append('\n');
+            }
+            
+            header(out, "hotel_http_requests_in_flight", "Exchanges currently inside the handler chain.", "gauge");
+            for (EndpointMetrics endpoint : endpoints.values()) {
+                out.append("hotel_http_requests_in_flight{path=\"").append(endpoint.path).append("\"} ")
+                    .append(endpoint.inFlight.get()).append('\n');
+            }
+            
+            header(out, "hotel_http_response_bytes_total", "Response body bytes written, before transfer encoding.", "counter");
+            for (EndpointMetrics endpoint : endpoints.values()) {
+                out.append("hotel_http_response_bytes_total{path=\"").append(endpoint.path).append("\"} ")
+                    .append(endpoint.bytesOut.sum()).append('\n');
+            }
+            
+            header(out, "hotel_bookings_total", "Committed booking changes, by event.", "counter");
+            out.append("hotel_bookings_total{event=\"created\"} ").append(bookingsCreated.sum()).append('\n');
+            out.append("hotel_bookings_total{event=\"updated\"} ").append(bookingsUpdated.sum()).append('\n');
+            out.append("hotel_bookings_total{event=\"deleted\"} ").append(bookingsDeleted.sum()).append('\n');
+            
+            header(out, "hotel_bookings_per_second", "Bookings created per second over the last " + (RateMeter.WINDOW - 1) + " seconds.", "gauge");
+            out.append("hotel_bookings_per_second ").append(bookingRate.perSecond()).append('\n');
+            
+            // Samples of one metric with different labels go together under one header
+            Map<String, List<Sampled>> families = new LinkedHashMap<>();
+            for (Sampled metric : sampled) {
+                int brace = metric.name.indexOf('{');
+                families.computeIfAbsent(brace == -1 ? metric.name : metric.name.substring(0, brace),
+                    family -> new ArrayList<>()).add(metric);
+            }
+            families.forEach((family, samples) -> {
+                header(out, family, samples.get(0).help, samples.get(0).type);
+                for (Sampled metric : samples) {
+                    out.append(metric.name).append(' ').append(metric.value.getAsLong()).append('\n');
+                }
+            });
+            return out.toString();
+        }
+        
+        private static void header(StringBuilder out, String name, String help, String type) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+        
+        static class Sampled {
+            final String name;
+            final String help;
+            final String type;
+            final LongSupplier value;
+            
+            Sampled(String name, String help, String type, LongSupplier value) {
+                this.name = name;
+                this.help = help;
+                this.type = type;
+                this.value = value;
+            }
+        }
+    }
+    
+    static class EndpointMetrics {
+        final String path;
+        // Indexed by status class, 1xx..5xx; exchanges that never sent headers count as 5xx
+        final LongAdder[] responses = new LongAdder[6];
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder bytesOut = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        
+        EndpointMetrics(String path) {
+            this.path = path;
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = new LongAdder();
+            }
+        }
+        
+        void record(int statusCode, long nanos, long bytes) {
+            int statusClass = statusCode / 100;
+            responses[statusClass >= 1 && statusClass <= 5 ? statusClass : 5].increment();
+            latency.record(nanos);
+            bytesOut.add(bytes);
+        }
+    }
+    
+    /**
+     * Times every exchange of its context and counts its status and response bytes.
+     */
+    static class MetricsFilter extends Filter {
+        private final EndpointMetrics endpoint;
+        
+        MetricsFilter(EndpointMetrics endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long start = System.nanoTime();
+            CountingOutputStream body = new CountingOutputStream(exchange.getResponseBody());
+            exchange.setStreams(null, body);
+            endpoint.inFlight.incrementAndGet();
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                endpoint.inFlight.decrementAndGet();
+                endpoint.record(exchange.getResponseCode(), System.nanoTime() - start, body.count);
+            }
+        }
+        
+        @Override
+        public String description() {
+            return "Records latency, status and response size for " + endpoint.path;
+        }
+    }
+    
+    static class CountingOutputStream extends FilterOutputStream {
+        long count;
+        
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+    
+    /**
+     * Lock-free log-linear histogram of nanosecond latencies: 16 linear sub-buckets per
+     * power of two, so any reported quantile is within about 6% of the true value.
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+        
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(index(value));
+            totalNanos.add(value);
+        }
+        
+        long totalNanos() {
+            return totalNanos.sum();
+        }
+        
+        long[] snapshot() {
+            long[] copy = new long[counts.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = counts.get(i);
+            }
+            return copy;
+        }
+        
+        static long total(long[] counts) {
+            long total = 0;
+            for (long count : counts) total += count;
+            return total;
+        }
+        
+        /**
+         * The midpoint of the bucket holding the given quantile, or 0 when nothing was recorded.
+         */
+        static long quantile(long[] counts, double quantile) {
+            long total = total(counts);
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return (lowerBound(i) + lowerBound(i + 1)) / 2;
+                }
+            }
+            return lowerBound(counts.length - 1);
+        }
+        
+        static int index(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+        
+        static long lowerBound(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = index % SUB_BUCKETS;
+            return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        }
+    }
+    
+    /**
+     * Events per second over the last WINDOW - 1 whole seconds, from a ring of per-second counters.
+     */
+    static class RateMeter {
+        static final int WINDOW = 11;
+        
+        private final AtomicLongArray seconds = new AtomicLongArray(WINDOW);
+        private final AtomicLongArray counts = new AtomicLongArray(WINDOW);
+        
+        void mark() {
+            long now = System.nanoTime() / 1_000_000_000L;
+            int i = (int) Math.floorMod(now, (long) WINDOW);
+            long stamp = seconds.get(i);
+            if (stamp != now && seconds.compareAndSet(i, stamp, now)) {
+                counts.set(i, 0);
+            }
+            counts.incrementAndGet(i);
+        }
+        
+        double perSecond() {
+            long now = System.nanoTime() / 1_000_000_000L;
+            long sum = 0;
+            for (int i = 0; i < WINDOW; i++) {
+                long stamp = seconds.get(i);
+                if (stamp < now && stamp >= now - (WINDOW - 1)) {
+                    sum += counts.get(i);
+                }
+            }
+            return (double) sum / (WINDOW - 1);
+        }
+    }
+    
+    /**
+     * Console logging for the request path. Callers only enqueue; a daemon thread formats
+     * queued lines and prints each batch with a single write and flush. When the queue is
+     * full lines are dropped and counted instead of blocking the request.
+     */
+    static class AsyncLog {
+        private static final ArrayBlockingQueue<Object[]> QUEUE = new ArrayBlockingQueue<>(8192);
+        private static final LongAdder DROPPED = new LongAdder();
+        private static volatile boolean running = true;
+        private static final Thread WRITER = new Thread(AsyncLog::writeLoop, "async-log");
+        
+        static {
+            WRITER.setDaemon(true);
+            WRITER.start();
+        }
+        
+        /**
+         * Logs prefix followed by detail; detail is only turned into a string on the log thread.
+         */
+        static void info(String prefix, Object detail) {
+            if (!QUEUE.offer(new Object[] { prefix, detail })) {
+                DROPPED.increment();
+            }
+        }
+        
+        static long dropped() {
+            return DROPPED.sum();
+        }
+        
+        /**
+         * Prints everything still queued and stops the log thread.
+         */
+        static void close() {
+            running = false;
+            try {
+                WRITER.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        private static void writeLoop() {
+            List<Object[]> batch = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            while (running || !QUEUE.isEmpty()) {
+                try {
+                    Object[] first = QUEUE.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    QUEUE.drainTo(batch, 1023);
+                    for (Object[] line : batch) {
+                        text.append(line[0]).append(line[1]).append(System.lineSeparator());
+                    }
+                    System.out.print(text);
+                    System.out.flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    batch.clear();
+                    text.setLength(0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Booking engine that commits check-and-reserve atomically. Writers lock only the
+     * rooms they touch, so bookings for different rooms proceed in parallel; readers go
+     * through the lock-free occupancy grid. Bookings live in a columnar store addressed
+     * by id, so find, update and delete are constant-time and listings walk ids in order.
+     * Changes to an existing booking are serialised on a lock stripe of its id.
+     */
+    static class BookingEngine {
+        private static final int ID_LOCK_STRIPES = 256;
+        // Bookable dates; keeps the occupancy grid from being stretched across the calendar
+        private static final int FIRST_DAY = (int) LocalDate.of(1900, 1, 1).toEpochDay();
+        private static final int LAST_DAY = (int) LocalDate.of(9999, 12, 31).toEpochDay();
+        // Longest stay taken; a stay fills one grid cell and one rollup per night under a room lock
+        static final int MAX_NIGHTS = 365;
+        
+        final Map<String, RoomInfo> inventory;
+        final BookingStore store = new BookingStore(1000);
+        final OccupancyGrid grid;
+        final List<BookingListener> listeners = new CopyOnWriteArrayList<>();
+        final BookingIndexes indexes;
+        final AvailabilityIndex availability;
+        private final Object[] idLocks = new Object[ID_LOCK_STRIPES];
+        private final AtomicInteger idCounter = new AtomicInteger(1000);
+        private BookingJournal journal;
+        private final AtomicInteger holdCounter = new AtomicInteger();
+        private final Map<Integer, Hold> holds = new ConcurrentHashMap<>();
+        private final Map<Object, Integer> holdsByClient = new ConcurrentHashMap<>();
+        private final SecureRandom holdSecrets = new SecureRandom();
+        final LongAdder expiredHolds = new LongAdder();
+        // Set before the engine takes requests
+        RoomAllocator allocator = RoomAllocator.BEST_FIT;
+        long holdMillis = TimeUnit.MINUTES.toMillis(10);
+        int maxHoldsPerClient = 3;
+        
+        BookingEngine(Map<String, RoomInfo> inventory) {
+            this.inventory = inventory;
+            this.grid = new OccupancyGrid(inventory);
+            this.indexes = new BookingIndexes(store, grid);
+            this.availability = new AvailabilityIndex(inventory);
+            for (int i = 0; i < idLocks.length; i++) {
+                idLocks[i] = new Object();
+            }
+            listeners.add(indexes);
+            listeners.add(availability);
+        }
+        
+        /**
+         * Loads recovered bookings (before the server starts) and journals every change from now on.
+         */
+        void attachJournal(BookingJournal journal, BookingStore recovered) {
+            for (Booking booking : recovered.bookings()) {
+                int slot = grid.slot(booking.roomTypeName(), booking.roomNumber);
+                if (slot < 0 || !grid.isFree(slot, booking.checkInDay, booking.checkOutDay)) {
+                    System.out.println("⚠️ Skipping unplaceable recovered booking: " + booking);
+                    continue;
+                }
+                store.put(booking);
+                grid.fill(slot, booking.checkInDay, booking.checkOutDay, booking.id);
+                idCounter.accumulateAndGet(booking.id + 1, Math::max);
+                for (BookingListener listener : listeners) {
+                    listener.bookingCreated(booking);
+                }
+            }
+            this.journal = journal;
+            listeners.add(journal);
+        }
+        
+        /**
+         * Blocks until every change made by the calling thread is on disk. Commits are
+         * batched by the journal writer, so concurrent callers share a single fsync.
+         * Returns false if the changes could not be written.
+         */
+        boolean awaitDurable() {
+            return journal == null || journal.awaitCommitted();
+        }
+        
+        Booking book(String name, String checkIn, String checkOut, String guests, String roomType) {
+            return book(name, epochDay(checkIn), epochDay(checkOut), parseGuests(guests), roomType);
+        }
+        
+        Booking book(String name, int checkInDay, int checkOutDay, int guests, String roomType) {
+            checkStayLength(checkInDay, checkOutDay);
+            RoomInfo info = inventory.get(roomType);
+            if (info == null || checkInDay < FIRST_DAY || checkOutDay <= checkInDay) return null;
+            
+            int totalPrice = stayPrice(info, checkOutDay - checkInDay);
+            byte roomTypeId = RoomTypes.ordinal(roomType);
+            int slotBase = grid.slotBase(roomType);
+            
+            while (true) {
+                int roomNum = allocator.choose(grid, slotBase, info.totalRooms, checkInDay, checkOutDay,
+                    slot -> grid.isFree(slot, checkInDay, checkOutDay));
+                if (roomNum == -1) return null;
+                int slot = slotBase + roomNum - 1;
+                
+                synchronized (grid.lock(slot)) {
+                    // Re-check under the room lock, another request may have taken it meanwhile
+                    if (grid.isFree(slot, checkInDay, checkOutDay)) {
+                        Booking booking = new Booking(idCounter.getAndIncrement(), name, checkInDay, checkOutDay,
+                            guests, roomTypeId, roomNum, totalPrice);
+                        store.put(booking);
+                        grid.fill(slot, checkInDay, checkOutDay, booking.id);
+                        for (BookingListener listener : listeners) {
+                            listener.bookingCreated(booking);
+                        }
+                        return booking;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Holds a room of roomType for [checkInDay, checkOutDay) for holdMillis, chosen like a
+         * booking's. The room sits in the grid under the negated hold id, so every check
+         * that sees bookings sees holds too, until the hold is confirmed, released or
+         * expires. Returns null if no room is free.
+         */
+        Hold hold(int checkInDay, int checkOutDay, String roomType) {
+            return hold(checkInDay, checkOutDay, roomType, null);
+        }
+        
+        /**
+         * As above, counting the hold against client, which may have at most
+         * maxHoldsPerClient live holds; a null client is not counted.
+         */
+        Hold hold(int checkInDay, int checkOutDay, String roomType, Object client) {
+            checkStayLength(checkInDay, checkOutDay);
+            RoomInfo info = inventory.get(roomType);
+            if (info == null || checkInDay < FIRST_DAY || checkOutDay <= checkInDay) return null;
+            
+            int totalPrice = stayPrice(info, checkOutDay - checkInDay);
+            if (!claimHold(client)) {
+                throw new IllegalStateException("Too many rooms held at once");
+            }
+            int slotBase = grid.slotBase(roomType);
+            while (true) {
+                int roomNum = allocator.choose(grid, slotBase, info.totalRooms, checkInDay, checkOutDay,
+                    slot -> grid.isFree(slot, checkInDay, checkOutDay));
+                if (roomNum == -1) {
+                    unclaimHold(client);
+                    return null;
+                }
+                int slot = slotBase + roomNum - 1;
+                
+                synchronized (grid.lock(slot)) {
+                    if (grid.isFree(slot, checkInDay, checkOutDay)) {
+                        int holdId = holdCounter.incrementAndGet();
+                        Hold hold = new Hold(holdId, holdToken(holdId), roomType, roomNum, checkInDay, checkOutDay,
+                            totalPrice, System.currentTimeMillis() + holdMillis, client);
+                        holds.put(hold.id, hold);
+                        grid.fill(slot, checkInDay, checkOutDay, -hold.id);
+                        availability.holdChanged(roomType, checkInDay, checkOutDay, 1);
+                        for (BookingListener listener : listeners) {
+                            listener.holdChanged(hold.asBooking());
+                        }
+                        // Scheduled last: a timer that fires before this returns must find the hold
+                        hold.timer = holdTimers.schedule(holdMillis, () -> expire(hold.id));
+                        return hold;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Turns a live hold into a booking of the same room, dates and price. Returns null if
+         * the hold is unknown, released or past its expiry.
+         */
+        Booking confirm(int holdId, String name, int guests) {
+            synchronized (idLock(-holdId)) {
+                Hold hold = holds.get(holdId);
+                if (hold == null) return null;
+                if (System.currentTimeMillis() > hold.expiresAtMillis) {
+                    // The wheel fires up to a tick late; the deadline still stands
+                    expire(holdId);
+                    return null;
+                }
+                
+                int slot = grid.slot(hold.roomType, hold.roomNumber);
+                synchronized (grid.lock(slot)) {
+                    holds.remove(holdId);
+                    unclaimHold(hold.client);
+                    Booking booking = new Booking(idCounter.getAndIncrement(), name, hold.checkInDay, hold.checkOutDay,
+                        guests, RoomTypes.ordinal(hold.roomType), hold.roomNumber, hold.totalPrice);
+                    store.put(booking);
+                    // Overwrites the hold's cells, so the room is never free in between
+                    grid.fill(slot, booking.checkInDay, booking.checkOutDay, booking.id);
+                    availability.holdChanged(hold.roomType, hold.checkInDay, hold.checkOutDay, -1);
+                    for (BookingListener listener : listeners) {
+                        listener.bookingCreated(booking);
+                    }
+                    cancelTimer(hold);
+                    return booking;
+                }
+            }
+        }
+        
+        /**
+         * Gives a held room back. Returns false if the hold is unknown or already gone.
+         */
+        boolean release(int holdId) {
+            synchronized (idLock(-holdId)) {
+                Hold hold = holds.get(holdId);
+                if (hold == null) return false;
+                
+                int slot = grid.slot(hold.roomType, hold.roomNumber);
+                synchronized (grid.lock(slot)) {
+                    holds.remove(holdId);
+                    unclaimHold(hold.client);
+                    grid.clear(slot, hold.checkInDay, hold.checkOutDay, -holdId);
+                    availability.holdChanged(hold.roomType, hold.checkInDay, hold.checkOutDay, -1);
+                    for (BookingListener listener : listeners) {
+                        listener.holdChanged(hold.asBooking());
+                    }
+                }
+                cancelTimer(hold);
+                return true;
+            }
+        }
+        
+        private void expire(int holdId) {
+            if (release(holdId)) {
+                expiredHolds.increment();
+            }
+        }
+        
+        private boolean claimHold(Object client) {
+            if (client == null) return true;
+            // A refused claim counts for a moment, so a racing claim may be refused too
+            if (holdsByClient.merge(client, 1, Integer::sum) <= maxHoldsPerClient) return true;
+            unclaimHold(client);
+            return false;
+        }
+        
+        private void unclaimHold(Object client) {
+            if (client != null) {
+                holdsByClient.computeIfPresent(client, (c, held) -> held == 1 ? null : held - 1);
+            }
+        }
+        
+        private static void cancelTimer(Hold hold) {
+            // Null only if the hold is confirmed or released before hold() scheduled it; the
+            // timer then finds nothing to expire
+            TimingWheel.Timer timer = hold.timer;
+            if (timer != null) {
+                holdTimers.cancel(timer);
+            }
+        }
+        
+        Hold findHold(int holdId) {
+            return holds.get(holdId);
+        }
+        
+        /**
+         * The id of the live hold that token (a Hold.token) stands for, or 0 if there is none
+         * or the token's secret does not match. Throws IllegalArgumentException if token is
+         * missing or not shaped like a hold token.
+         */
+        int holdId(String token) {
+            int dot = token == null ? -1 : token.indexOf('.');
+            int holdId;
+            try {
+                holdId = dot > 0 ? Integer.parseInt(token.substring(0, dot)) : 0;
+            } catch (NumberFormatException e) {
+                holdId = 0;
+            }
+            if (holdId <= 0) throw new IllegalArgumentException("Invalid hold id");
+            
+            Hold hold = holds.get(holdId);
+            return hold != null && MessageDigest.isEqual(hold.token.getBytes(StandardCharsets.US_ASCII),
+                token.getBytes(StandardCharsets.US_ASCII)) ? holdId : 0;
+        }
+        
+        // The id, so the hold can be found, and 128 random bits, so it cannot be guessed
+        private String holdToken(int holdId) {
+            byte[] secret = new byte[16];
+            holdSecrets.nextBytes(secret);
+            StringBuilder token = new StringBuilder().append(holdId).append('.');
+            for (byte b : secret) {
+                token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return token.toString();
+        }
+        
+        int holdCount() {
+            return holds.size();
+        }
+        
+        /**
+         * Books every request or none of them. Rooms for the whole group are planned in one
+         * pass over the grid, then every planned room is locked (in slot order) and checked
+         * again before anything is committed; if another booking got in between, the group
+         * is planned afresh. The bookings reach listeners as one bookingsCreated group.
+         */
+        BatchResult bookAll(List<BookingRequest> requests) {
+            for (BookingRequest request : requests) {
+                checkStayLength(request.checkInDay, request.checkOutDay);
+                RoomInfo info = inventory.get(request.roomType);
+                if (info != null && request.checkInDay >= FIRST_DAY && request.checkOutDay > request.checkInDay) {
+                    stayPrice(info, request.checkOutDay - request.checkInDay);
+                }
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest request = requests.get(i);
+                if (!inventory.containsKey(request.roomType) || request.checkInDay < FIRST_DAY
+                        || request.checkOutDay <= request.checkInDay) {
+                    return BatchResult.failed(i);
+                }
+            }
+            
+            for (int attempt = 0; attempt < 3; attempt++) {
+                int[] plan = new int[requests.size()];
+                int unplaceable = plan(requests, plan);
+                if (unplaceable != -1) return BatchResult.failed(unplaceable);
+                
+                Object[] locks = Arrays.stream(plan).distinct().sorted().mapToObj(grid::lock).toArray();
+                List<Booking> booked = withLocks(locks, 0, () -> commitPlan(requests, plan));
+                if (booked != null) return new BatchResult(booked, -1);
+            }
+            return BatchResult.failed(-1);
+        }
+        
+        /**
+         * Picks a slot for every request, honouring preferred room numbers when free and
+         * asking the allocator otherwise, so that no two requests of the group overlap.
+         * Returns the index of the first request that cannot be placed, or -1.
+         */
+        private int plan(List<BookingRequest> requests, int[] plan) {
+            Map<Integer, List<BookingRequest>> claims = new HashMap<>();
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest request = requests.get(i);
+                int rooms = inventory.get(request.roomType).totalRooms;
+                int slotBase = grid.slotBase(request.roomType);
+                int chosen = -1;
+                if (request.roomNumber >= 1 && request.roomNumber <= rooms
+                        && fits(slotBase + request.roomNumber - 1, request, claims)) {
+                    chosen = slotBase + request.roomNumber - 1;
+                }
+                if (chosen == -1) {
+                    int roomNum = allocator.choose(grid, slotBase, rooms, request.checkInDay, request.checkOutDay,
+                        slot -> fits(slot, request, claims));
+                    if (roomNum == -1) return i;
+                    chosen = slotBase + roomNum - 1;
+                }
+                plan[i] = chosen;
+                claims.computeIfAbsent(chosen, k -> new ArrayList<>()).add(request);
+            }
+            return -1;
+        }
+        
+        private boolean fits(int slot, BookingRequest request, Map<Integer, List<BookingRequest>> claims) {
+            for (BookingRequest claimed : claims.getOrDefault(slot, Collections.emptyList())) {
+                if (claimed.checkInDay < request.checkOutDay && request.checkInDay < claimed.checkOutDay) {
+                    return false;
+                }
+            }
+            return grid.isFree(slot, request.checkInDay, request.checkOutDay);
+        }
+        
+        /**
+         * Runs with every planned room locked: re-checks the plan against the grid and commits
+         * it, or returns null if any room was taken since planning.
+         */
+        private List<Booking> commitPlan(List<BookingRequest> requests, int[] plan) {
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest request = requests.get(i);
+                if (!grid.isFree(plan[i], request.checkInDay, request.checkOutDay)) return null;
+            }
+            
+            List<Booking> booked = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                BookingRequest request = requests.get(i);
+                RoomInfo info = inventory.get(request.roomType);
+                Booking booking = new Booking(idCounter.getAndIncrement(), request.name, request.checkInDay,
+                    request.checkOutDay, request.guests, RoomTypes.ordinal(request.roomType),
+                    plan[i] - grid.slotBase(request.roomType) + 1, stayPrice(info, request.checkOutDay - request.checkInDay));
+                store.put(booking);
+                grid.fill(plan[i], booking.checkInDay, booking.checkOutDay, booking.id);
+                booked.add(booking);
+            }
+            for (BookingListener listener : listeners) {
+                listener.bookingsCreated(booked);
+            }
+            return booked;
+        }
+        
+        private static <T> T withLocks(Object[] locks, int from, Supplier<T> action) {
+            if (from == locks.length) return action.get();
+            synchronized (locks[from]) {
+                return withLocks(locks, from + 1, action);
+            }
+        }
+        
+        /**
+         * Re-packs the stays of roomType that start after today: in check-in order, each goes
+         * to the room whose previous stay ends closest before it, so free nights gather in
+         * runs long enough for long stays instead of holes between short ones. Holds move
+         * like bookings. Stays under way keep their rooms; dates and prices never change.
+         * Every room of the type and every id stripe is locked meanwhile, so this is for
+         * quiet hours; the stays come from the room-type index rather than the grid, so the
+         * locks are held for time in proportion to the type's bookings, not the calendar.
+         * Returns how many stays changed room, or -1 if the type is unknown.
+         */
+        int repack(String roomType, int today) {
+            RoomInfo info = inventory.get(roomType);
+            if (info == null) return -1;
+            int slotBase = grid.slotBase(roomType);
+            
+            // Id stripes before rooms, the order update and delete take them in
+            Object[] locks = Arrays.copyOf(idLocks, ID_LOCK_STRIPES + info.totalRooms);
+            for (int i = 0; i < info.totalRooms; i++) {
+                locks[ID_LOCK_STRIPES + i] = grid.lock(slotBase + i);
+            }
+            return withLocks(locks, 0, () -> repackLocked(roomType, slotBase, info.totalRooms, today));
+        }
+        
+        private int repackLocked(String roomType, int slotBase, int rooms, int today) {
+            // The stay covering today is under way and fixes when its room frees up
+            long[] freeFrom = new long[rooms];
+            for (int room = 0; room < rooms; room++) {
+                freeFrom[room] = Integer.MIN_VALUE;
+                int id = today >= grid.firstDay() && today <= grid.lastDay() ? grid.bookingAt(today, slotBase + room) : 0;
+                if (id != 0) {
+                    freeFrom[room] = id > 0 ? store.get(id).checkOutDay : holds.get(-id).checkOutDay;
+                }
+            }
+            List<Booking> unstarted = new ArrayList<>();
+            for (int id : indexes.idsOfType(roomType)) {
+                Booking booking = store.get(id);
+                if (booking != null && booking.checkInDay > today) unstarted.add(booking);
+            }
+            for (Hold hold : holds.values()) {
+                if (hold.roomType.equals(roomType) && hold.checkInDay > today) unstarted.add(hold.asBooking());
+            }
+            unstarted.sort(Comparator.comparingInt((Booking booking) -> booking.checkInDay).thenComparingInt(booking -> booking.id));
+            
+            // Rooms keyed by (day they free up, room) so floor() finds the closest fit;
+            // among equally good rooms a stay keeps its own, else the lowest number wins
+            TreeSet<Long> byFreeFrom = new TreeSet<>();
+            for (int room = 0; room < rooms; room++) {
+                byFreeFrom.add(freeFrom[room] << 32 | (rooms - room));
+            }
+            int[] assigned = new int[unstarted.size()];
+            for (int i = 0; i < assigned.length; i++) {
+                Booking booking = unstarted.get(i);
+                Long fit = byFreeFrom.floor((long) booking.checkInDay << 32 | 0xFFFFFFFFL);
+                // Cannot happen while the current assignment is valid, but never leave a half-made plan
+                if (fit == null) return 0;
+                long own = (fit >> 32) << 32 | (rooms - booking.roomNumber + 1);
+                if (byFreeFrom.contains(own)) fit = own;
+                byFreeFrom.remove(fit);
+                assigned[i] = rooms - (int) (fit & 0xFFFFFFFFL);
+                byFreeFrom.add((long) booking.checkOutDay << 32 | (rooms - assigned[i]));
+            }
+            
+            // Take every moved stay out before putting any back, as they may swap rooms
+            List<Booking> before = new ArrayList<>();
+            List<Booking> after = new ArrayList<>();
+            for (int i = 0; i < assigned.length; i++) {
+                Booking booking = unstarted.get(i);
+                if (assigned[i] + 1 == booking.roomNumber) continue;
+                grid.clear(slotBase + booking.roomNumber - 1, booking.checkInDay, booking.checkOutDay, booking.id);
+                before.add(booking);
+                after.add(new Booking(booking.id, booking.name, booking.checkInDay, booking.checkOutDay,
+                    booking.guests, booking.roomType, assigned[i] + 1, booking.totalPrice));
+            }
+            for (int i = 0; i < after.size(); i++) {
+                Booking booking = after.get(i);
+                grid.fill(slotBase + booking.roomNumber - 1, booking.checkInDay, booking.checkOutDay, booking.id);
+                if (booking.id < 0) {
+                    holds.get(-booking.id).roomNumber = booking.roomNumber;
+                    for (BookingListener listener : listeners) {
+                        listener.holdChanged(before.get(i));
+                        listener.holdChanged(booking);
+                    }
+                    continue;
+                }
+                store.put(booking);
+                for (BookingListener listener : listeners) {
+                    listener.bookingUpdated(before.get(i), booking);
+                }
+            }
+            return after.size();
+        }
+        
+        Booking find(int bookingId) {
+            return store.get(bookingId);
+        }
+        
+        boolean contains(int bookingId) {
+            return store.contains(bookingId);
+        }
+        
+        /**
+         * Rooms of roomType free on every night of [checkInDay, checkOutDay), so each could take
+         * the whole stay; -1 if the type is unknown. The availability index bounds the count in
+         * O(log days), and only when it leaves rooms open are they checked on the grid.
+         */
+        int roomsFreeForStay(String roomType, int checkInDay, int checkOutDay) {
+            int bound = availability.freeRooms(roomType, checkInDay, checkOutDay);
+            if (bound <= 0) return bound;
+            int slotBase = grid.slotBase(roomType);
+            int free = 0;
+            for (int slot = slotBase; slot < slotBase + inventory.get(roomType).totalRooms && free < bound; slot++) {
+                if (grid.isFree(slot, checkInDay, checkOutDay)) free++;
+            }
+            return free;
+        }
+        
+        /**
+         * Guest of the booking in a grid cell; cells under a hold read "On hold".
+         */
+        String guestName(int bookingId) {
+            return bookingId < 0 ? "On hold" : store.name(bookingId);
+        }
+        
+        /**
+         * Live bookings in id order, materialised one at a time.
+         */
+        Iterable<Booking> bookings() {
+            return store.bookings();
+        }
+        
+        int size() {
+            return store.size();
+        }
+        
+        Booking delete(int bookingId) {
+            synchronized (idLock(bookingId)) {
+                Booking booking = store.get(bookingId);
+                if (booking == null) return null;
+                
+                int slot = grid.slot(booking.roomTypeName(), booking.roomNumber);
+                synchronized (grid.lock(slot)) {
+                    grid.clear(slot, booking.checkInDay, booking.checkOutDay, booking.id);
+                    store.remove(bookingId);
+                    for (BookingListener listener : listeners) {
+                        listener.bookingDeleted(booking);
+                    }
+                }
+                return booking;
+            }
+        }
+        
+        /**
+         * Applies the changes to a booking, keeping its room when possible. Returns the
+         * updated booking, or null if it is gone or no room of the type is free.
+         */
+        Booking update(int bookingId, String name, String checkIn, String checkOut, String guests,
+                       String roomType, int roomNumber) {
+            RoomInfo info = inventory.get(roomType);
+            if (info == null) return null;
+            
+            int checkInDay = epochDay(checkIn);
+            int checkOutDay = epochDay(checkOut);
+            checkStayLength(checkInDay, checkOutDay);
+            if (checkInDay < FIRST_DAY || checkOutDay <= checkInDay) return null;
+            
+            Booking changes = new Booking(bookingId, name, checkInDay, checkOutDay, parseGuests(guests),
+                RoomTypes.ordinal(roomType), -1, stayPrice(info, checkOutDay - checkInDay));
+            
+            synchronized (idLock(bookingId)) {
+                Booking booking = store.get(bookingId);
+                if (booking == null) return null;
+                
+                // Prefer the requested room, or the current one when the type is unchanged
+                int preferred = roomNumber > 0 ? roomNumber
+                    : changes.roomType == booking.roomType ? booking.roomNumber : -1;
+                if (preferred >= 1 && preferred <= info.totalRooms) {
+                    Booking moved = tryMove(booking, changes, preferred);
+                    if (moved != null) return moved;
+                }
+                for (int roomNum = 1; roomNum <= info.totalRooms; roomNum++) {
+                    if (roomNum == preferred) continue;
+                    Booking moved = tryMove(booking, changes, roomNum);
+                    if (moved != null) return moved;
+                }
+                return null;
+            }
+        }
+        
+        private Booking tryMove(Booking booking, Booking changes, int roomNumber) {
+            int from = grid.slot(booking.roomTypeName(), booking.roomNumber);
+            int to = grid.slot(changes.roomTypeName(), roomNumber);
+            
+            synchronized (grid.lock(Math.min(from, to))) {
+                synchronized (grid.lock(Math.max(from, to))) {
+                    // Take the booking out first so it does not conflict with itself
+                    grid.clear(from, booking.checkInDay, booking.checkOutDay, booking.id);
+                    if (!grid.isFree(to, changes.checkInDay, changes.checkOutDay)) {
+                        grid.fill(from, booking.checkInDay, booking.checkOutDay, booking.id);
+                        return null;
+                    }
+                    
+                    Booking after = new Booking(booking.id, changes.name, changes.checkInDay, changes.checkOutDay,
+                        changes.guests, changes.roomType, roomNumber, changes.totalPrice);
+                    store.put(after);
+                    grid.fill(to, after.checkInDay, after.checkOutDay, after.id);
+                    for (BookingListener listener : listeners) {
+                        listener.bookingUpdated(booking, after);
+                    }
+                    return after;
+                }
+            }
+        }
+        
+        private Object idLock(int bookingId) {
+            return idLocks[Math.floorMod(bookingId, ID_LOCK_STRIPES)];
+        }
+        
+        /**
+         * Rejects stays of more than MAX_NIGHTS nights. Other unbookable dates (checkout not
+         * after checkin, out of range) are left to the callers, which book nothing for them.
+         */
+        static void checkStayLength(int checkInDay, int checkOutDay) {
+            if (checkInDay != Integer.MIN_VALUE && checkOutDay - (long) checkInDay > MAX_NIGHTS) {
+                throw new IllegalArgumentException("A stay can be at most " + MAX_NIGHTS + " nights");
+            }
+        }
+        
+        /**
+         * Price of a stay; bookings keep it as an int, so a total past Integer.MAX_VALUE is
+         * refused rather than wrapped negative.
+         */
+        static int stayPrice(RoomInfo info, int nights) {
+            long price = (long) info.pricePerNight * nights;
+            if (price > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Total price too large: " + price);
+            }
+            return (int) price;
+        }
+        
+        /**
+         * Epoch day of an ISO date, or Integer.MIN_VALUE outside FIRST_DAY..LAST_DAY. Throws
+         * IllegalArgumentException if date is missing or not an ISO date.
+         */
+        static int epochDay(String date) {
+            if (date == null) throw new IllegalArgumentException("Missing date");
+            long day;
+            try {
+                day = LocalDate.parse(date).toEpochDay();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date: " + date);
+            }
+            return day >= FIRST_DAY && day <= LAST_DAY ? (int) day : Integer.MIN_VALUE;
+        }
+        
+        /**
+         * Guest counts come from a free-text form field; anything unparseable is stored as 0.
+         */
+        static int parseGuests(String guests) {
+            if (guests == null) return 0;
+            try {
+                return Integer.parseInt(guests.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Picks the room for a new stay from the rooms of one type. Allocators only read the
+     * grid; the engine locks the room picked and checks it again before committing, and
+     * asks again if it was taken meanwhile. Chosen with --allocator=first-fit|best-fit.
+     */
+    interface RoomAllocator {
+        RoomAllocator FIRST_FIT = new FirstFitAllocator();
+        RoomAllocator BEST_FIT = new BestFitAllocator();
+        
+        /**
+         * Room number (1-based) for [checkInDay, checkOutDay) among the rooms of the type
+         * starting at slotBase whose slot free accepts, or -1 if there is none.
+         */
+        int choose(OccupancyGrid grid, int slotBase, int rooms, int checkInDay, int checkOutDay, IntPredicate free);
+        
+        static RoomAllocator named(String name) {
+            switch (name) {
+                case "first-fit": return FIRST_FIT;
+                case "best-fit": return BEST_FIT;
+                default: throw new IllegalArgumentException("Unknown allocator: " + name);
+            }
+        }
+    }
+    
+    /**
+     * The lowest-numbered free room. Cheap, but stays land wherever the first hole is,
+     * leaving one- and two-night gaps spread over every room.
+     */
+    static class FirstFitAllocator implements RoomAllocator {
+        @Override
+        public int choose(OccupancyGrid grid, int slotBase, int rooms, int checkInDay, int checkOutDay, IntPredicate free) {
+            for (int roomNum = 1; roomNum <= rooms; roomNum++) {
+                if (free.test(slotBase + roomNum - 1)) return roomNum;
+            }
+            return -1;
+        }
+    }
+    
+    /**
+     * The free room whose free run around the stay is shortest, so a stay fills the
+     * tightest hole that takes it and rooms with long free runs are kept for long stays.
+     * Runs are measured up to HORIZON nights either side and only as far as could still
+     * beat the best room so far; a stay that exactly fills a hole ends the search.
+     */
+    static class BestFitAllocator implements RoomAllocator {
+        private static final int HORIZON = 28;
+        
+        @Override
+        public int choose(OccupancyGrid grid, int slotBase, int rooms, int checkInDay, int checkOutDay, IntPredicate free) {
+            int best = -1;
+            int bestRun = 2 * HORIZON + 1;
+            for (int roomNum = 1; roomNum <= rooms && bestRun > 0; roomNum++) {
+                int slot = slotBase + roomNum - 1;
+                if (!free.test(slot)) continue;
+                int before = freeNights(grid, slot, checkInDay - 1, -1, Math.min(HORIZON, bestRun));
+                if (before == bestRun) continue;
+                int run = before + freeNights(grid, slot, checkOutDay, 1, Math.min(HORIZON, bestRun - before));
+                if (run < bestRun) {
+                    best = roomNum;
+                    bestRun = run;
+                }
+            }
+            return best;
+        }
+        
+        private static int freeNights(OccupancyGrid grid, int slot, int day, int step, int limit) {
+            int nights = 0;
+            while (nights < limit && grid.bookingAt(day, slot) == 0) {
+                nights++;
+                day += step;
+            }
+            return nights;
+        }
+    }
+    
+    /**
+     * Receives every committed booking change. Called while the engine still holds the
+     * locks of the rooms involved, so implementations must be quick and must not block.
+     * The bookings passed in are immutable snapshots of the stored rows.
+     */
+    interface BookingListener {
+        void bookingCreated(Booking booking);
+        
+        void bookingUpdated(Booking before, Booking after);
+        
+        void bookingDeleted(Booking booking);
+        
+        /**
+         * Bookings committed together by BookingEngine.bookAll. Listeners that must keep the
+         * group atomic, like the journal, override this; by default each booking is passed
+         * to bookingCreated.
+         */
+        default void bookingsCreated(List<Booking> bookings) {
+            for (Booking booking : bookings) {
+                bookingCreated(booking);
+            }
+        }
+        
+        /**
+         * A hold took or gave back its room's nights, or was moved to another room; hold is
+         * as Hold.asBooking renders it. Holds are not bookings, so only listeners following
+         * room occupancy, like the event streams, override this.
+         */
+        default void holdChanged(Booking hold) {
+        }
+    }
+    
+    /**
+     * One room of a group booking, parsed from a form line or a CSV row. roomNumber is a
+     * preference and -1 when absent.
+     */
+    static class BookingRequest {
+        String name;
+        int checkInDay;
+        int checkOutDay;
+        int guests;
+        String roomType;
+        int roomNumber = -1;
+        
+        /**
+         * Reads name, checkin, checkout, guests, roomType and roomNumber; keys are matched
+         * case-insensitively so CSV headers like checkIn work too.
+         */
+        static BookingRequest fromParams(Map<String, String> params) {
+            Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            values.putAll(params);
+            BookingRequest request = new BookingRequest();
+            request.name = values.get("name");
+            request.checkInDay = BookingEngine.epochDay(required(values, "checkin"));
+            request.checkOutDay = BookingEngine.epochDay(required(values, "checkout"));
+            BookingEngine.checkStayLength(request.checkInDay, request.checkOutDay);
+            request.guests = BookingEngine.parseGuests(values.get("guests"));
+            request.roomType = required(values, "roomType");
+            String roomNumber = values.get("roomNumber");
+            if (roomNumber != null && !roomNumber.isEmpty()) request.roomNumber = Integer.parseInt(roomNumber);
+            return request;
+        }
+        
+        private static String required(Map<String, String> values, String key) {
+            String value = values.get(key);
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("Missing " + key);
+            }
+            return value;
+        }
+    }
+    
+    /**
+     * Outcome of BookingEngine.bookAll: the bookings in request order, or null with the
+     * index of the request that could not be placed (-1 if the group kept losing races).
+     */
+    static class BatchResult {
+        final List<Booking> bookings;
+        final int unplaceable;
+        
+        BatchResult(List<Booking> bookings, int unplaceable) {
+            this.bookings = bookings;
+            this.unplaceable = unplaceable;
+        }
+        
+        static BatchResult failed(int unplaceable) {
+            return new BatchResult(null, unplaceable);
+        }
+    }
+    
+    /**
+     * A room kept out of availability for one stay while a guest checks out. It occupies
+     * the grid under its negated id like a booking would, but is not in the store, the
+     * journal or reports: holds are lost on restart or when the property moves, as if
+     * they had expired.
+     */
+    static class Hold {
+        final int id;
+        // What clients name the hold by; the id alone would let anyone confirm or release it
+        final String token;
+        final String roomType;
+        final int checkInDay;
+        final int checkOutDay;
+        final int totalPrice;
+        final long expiresAtMillis;
+        // Counted against in BookingEngine.holdsByClient while the hold lives; null if not counted
+        final Object client;
+        // Changed only by repacks, which hold every id stripe
+        volatile int roomNumber;
+        volatile TimingWheel.Timer timer;
+        
+        Hold(int id, String token, String roomType, int roomNumber, int checkInDay, int checkOutDay, int totalPrice,
+                long expiresAtMillis, Object client) {
+            this.id = id;
+            this.token = token;
+            this.roomType = roomType;
+            this.roomNumber = roomNumber;
+            this.checkInDay = checkInDay;
+            this.checkOutDay = checkOutDay;
+            this.totalPrice = totalPrice;
+            this.expiresAtMillis = expiresAtMillis;
+            this.client = client;
+        }
+        
+        /**
+         * The hold as a nameless stay under its grid id, for code that moves stays around.
+         */
+        Booking asBooking() {
+            return new Booking(-id, null, checkInDay, checkOutDay, 0, RoomTypes.ordinal(roomType), roomNumber, totalPrice);
+        }
+    }
+    
+    /**
+     * Hierarchical timing wheel: LEVELS wheels of SLOTS buckets, a bucket of level L spanning
+     * SLOTS^L ticks. A timer goes into the lowest level that reaches its deadline and drops
+     * a level each time its bucket comes round, so scheduling and cancelling are O(1) and
+     * one ticker thread serves every pending timer, however many there are. Timers fire
+     * on the ticker thread up to a tick late, so tasks must be short.
+     */
+    static class TimingWheel {
+        private static final int SLOT_BITS = 6;
+        private static final int SLOTS = 1 << SLOT_BITS;
+        private static final int LEVELS = 4;
+        // About 19 days at 100 ms ticks; longer delays are cut to this
+        private static final long MAX_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+        
+        private final long tickNanos;
+        private final long startNanos = System.nanoTime();
+        // Heads of each bucket's doubly linked list
+        private final Timer[] buckets = new Timer[LEVELS * SLOTS];
+        // Ticks processed so far
+        private long now;
+        private int pending;
+        private Thread ticker;
+        
+        static class Timer {
+            final Runnable task;
+            final long deadline;
+            int bucket = -1;
+            Timer previous;
+            Timer next;
+            
+            Timer(Runnable task, long deadline) {
+                this.task = task;
+                this.deadline = deadline;
+            }
+        }
+        
+        TimingWheel(long tickMillis) {
+            this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        }
+        
+        /**
+         * Runs task once delayMillis have passed: never early, and late by at most a tick
+         * plus however far the ticker has fallen behind.
+         */
+        synchronized Timer schedule(long delayMillis, Runnable task) {
+            long current = currentTick();
+            if (pending == 0) {
+                // Nothing to fire in between, so skip the ticks an idle or unstarted ticker has not processed
+                now = current;
+            }
+            // Counted from the tick under way, which has partly passed, so one more is needed
+            long ticks = (TimeUnit.MILLISECONDS.toNanos(delayMillis) + tickNanos - 1) / tickNanos + 1;
+            Timer timer = new Timer(task, now + Math.min(current - now + ticks, MAX_TICKS));
+            place(timer);
+            pending++;
+            if (ticker == null) {
+                ticker = new Thread(this::run, "timing-wheel");
+                ticker.setDaemon(true);
+                ticker.start();
+            }
+            return timer;
+        }
+        
+        /**
+         * Stops timer from firing. Returns false if it already fired or was cancelled.
+         */
+        synchronized boolean cancel(Timer timer) {
+            if (timer.bucket < 0) return false;
+            unlink(timer);
+            pending--;
+            return true;
+        }
+        
+        synchronized int pending() {
+            return pending;
+        }
+        
+        private long currentTick() {
+            return (System.nanoTime() - startNanos) / tickNanos;
+        }
+        
+        private void place(Timer timer) {
+            long delta = timer.deadline - now;
+            int level = 0;
+            while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+                level++;
+            }
+            link(timer, level * SLOTS + (int) ((timer.deadline >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+        }
+        
+        private void link(Timer timer, int bucket) {
+            timer.bucket = bucket;
+            timer.previous = null;
+            timer.next = buckets[bucket];
+            if (timer.next != null) timer.next.previous = timer;
+            buckets[bucket] = timer;
+        }
+        
+        private void unlink(Timer timer) {
+            if (timer.previous != null) timer.previous.next = timer.next;
+            else buckets[timer.bucket] = timer.next;
+            if (timer.next != null) timer.next.previous = timer.previous;
+            timer.bucket = -1;
+            timer.previous = null;
+            timer.next = null;
+        }
+        
+        /**
+         * Moves the clock one tick: buckets of higher levels that come round are spread
+         * over the levels below (top down, as one may land in the next), then every timer
+         * in the level-0 bucket is due.
+         */
+        private void advance(List<Timer> due) {
+            now++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((now & ((1L << (SLOT_BITS * level)) - 1)) != 0) continue;
+                int bucket = level * SLOTS + (int) ((now >>> (SLOT_BITS * level)) & (SLOTS - 1));
+                for (Timer timer = buckets[bucket]; timer != null; ) {
+                    Timer next = timer.next;
+                    unlink(timer);
+                    place(timer);
+                    timer = next;
+                }
+            }
+            int bucket = (int) (now & (SLOTS - 1));
+            for (Timer timer = buckets[bucket]; timer != null; ) {
+                Timer next = timer.next;
+                unlink(timer);
+                pending--;
+                due.add(timer);
+                timer = next;
+            }
+        }
+        
+        private void run() {
+            List<Timer> due = new ArrayList<>();
+            while (true) {
+                synchronized (this) {
+                    long target = currentTick();
+                    while (now < target) {
+                        advance(due);
+                    }
+                }
+                // Tasks run outside the lock so they may schedule and cancel timers
+                for (Timer timer : due) {
+                    try {
+                        timer.task.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("⚠️ Timer task failed: " + e);
+                    }
+                }
+                due.clear();
+                LockSupport.parkNanos(tickNanos);
+            }
+        }
+    }
+    
+    /**
+     * Filters for listing bookings: a stay overlapping [from, to] (inclusive dates), room
+     * type and number, a case-insensitive guest name prefix, an id cursor and a page size.
+     */
+    static class BookingQuery {
+        long fromDay = Long.MIN_VALUE;
+        long toDay = Long.MAX_VALUE;
+        String roomType;
+        int roomNumber = -1;
+        String namePrefix;
+        int afterId = Integer.MIN_VALUE;
+        int limit = 50;
+        
+        /**
+         * Throws IllegalArgumentException naming the first parameter that does not parse.
+         */
+        static BookingQuery fromParams(Map<String, String> params) {
+            BookingQuery query = new BookingQuery();
+            if (params.containsKey("from")) query.fromDay = dayParam(params, "from");
+            if (params.containsKey("to")) query.toDay = dayParam(params, "to");
+            query.roomType = params.get("roomType");
+            query.roomNumber = intParam(params, "roomNumber", -1);
+            if (params.containsKey("name")) query.namePrefix = params.get("name").toLowerCase(Locale.ROOT);
+            query.afterId = intParam(params, "cursor", Integer.MIN_VALUE);
+            query.limit = intParam(params, "limit", 50);
+            if (query.limit < 1) throw new IllegalArgumentException("Invalid limit: " + query.limit);
+            query.limit = Math.min(query.limit, 500);
+            return query;
+        }
+        
+        private static long dayParam(Map<String, String> params, String name) {
+            try {
+                return LocalDate.parse(params.get(name)).toEpochDay();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + params.get(name));
+            }
+        }
+        
+        boolean hasDateRange() {
+            return fromDay != Long.MIN_VALUE || toDay != Long.MAX_VALUE;
+        }
+        
+        /**
+         * Every filter except the name, on raw column values, so scans can skip rows
+         * without materialising them.
+         */
+        boolean matches(int id, byte roomTypeId, int roomNum, int checkInDay, int checkOutDay) {
+            if (id <= afterId) return false;
+            if (roomType != null && !roomType.equals(RoomTypes.name(roomTypeId))) return false;
+            if (roomNumber != -1 && roomNumber != roomNum) return false;
+            return checkInDay <= toDay && checkOutDay > fromDay;
+        }
+        
+        boolean matches(Booking booking) {
+            if (!matches(booking.id, booking.roomType, booking.roomNumber, booking.checkInDay, booking.checkOutDay)) {
+                return false;
+            }
+            return namePrefix == null || (booking.name != null && booking.name.toLowerCase(Locale.ROOT).startsWith(namePrefix));
+        }
+    }
+    
+    /**
+     * Occupancy and revenue by room type and day. Every night of a stay counts as one sold
+     * room-night and earns its share of totalPrice (split evenly, the remainder spread over
+     * the nights). Daily totals live in pages of 64 days, built by a parallel scan of the
+     * booking store when the property opens and then kept current by the listener, so a
+     * report sums only the days it covers. scan() computes the same figures from the
+     * store's columns, for checking the rollups.
+     */
+    static class ReportEngine implements BookingListener {
+        private static final int PAGE_BITS = 6;
+        private static final int PAGE_DAYS = 1 << PAGE_BITS;
+        
+        private final BookingStore store;
+        final String[] roomTypes;
+        private final int[] totalRooms;
+        // Room type ordinal to column, -1 for types outside this inventory
+        private final int[] columnOf = new int[256];
+        private final ConcurrentHashMap<Integer, AtomicLongArray> pages = new ConcurrentHashMap<>();
+        
+        ReportEngine(BookingEngine engine) {
+            this.store = engine.store;
+            this.roomTypes = engine.inventory.keySet().toArray(new String[0]);
+            this.totalRooms = new int[roomTypes.length];
+            Arrays.fill(columnOf, -1);
+            for (int column = 0; column < roomTypes.length; column++) {
+                totalRooms[column] = engine.inventory.get(roomTypes[column]).totalRooms;
+                columnOf[RoomTypes.ordinal(roomTypes[column]) & 0xff] = column;
+            }
+            IntStream.range(0, store.chunkCount()).parallel()
+                .forEach(chunk -> store.forEachStay(chunk, (checkIn, checkOut, roomType, totalPrice) ->
+                    add(checkIn, checkOut, roomType, totalPrice, 1)));
+        }
+        
+        @Override
+        public void bookingCreated(Booking booking) {
+            add(booking.checkInDay, booking.checkOutDay, booking.roomType, booking.totalPrice, 1);
+        }
+        
+        @Override
+        public void bookingUpdated(Booking before, Booking after) {
+            add(before.checkInDay, before.checkOutDay, before.roomType, before.totalPrice, -1);
+            add(after.checkInDay, after.checkOutDay, after.roomType, after.totalPrice, 1);
+        }
+        
+        @Override
+        public void bookingDeleted(Booking booking) {
+            add(booking.checkInDay, booking.checkOutDay, booking.roomType, booking.totalPrice, -1);
+        }
+        
+        private void add(int checkIn, int checkOut, byte roomType, int totalPrice, int sign) {
+            int column = columnOf[roomType & 0xff];
+            if (column < 0) return;
+            int nights = checkOut - checkIn;
+            for (int night = 0; night < nights; night++) {
+                int day = checkIn + night;
+                AtomicLongArray page = pages.computeIfAbsent(day >> PAGE_BITS,
+                    p -> new AtomicLongArray(PAGE_DAYS * roomTypes.length * 2));
+                int cell = ((day & (PAGE_DAYS - 1)) * roomTypes.length + column) * 2;
+                page.addAndGet(cell, sign);
+                page.addAndGet(cell + 1, sign * nightShare(totalPrice, nights, night));
+            }
+        }
+        
+        private static long nightShare(long totalPrice, int nights, int night) {
+            return totalPrice * (night + 1) / nights - totalPrice * night / nights;
+        }
+        
+        /**
+         * Sold room-nights and revenue for each day of [fromDay, toDay] and room type, from
+         * the rollups; see cell() for the layout.
+         */
+        long[] rollup(int fromDay, int toDay) {
+            int columns = roomTypes.length;
+            long[] totals = new long[(toDay - fromDay + 1) * columns * 2];
+            for (int day = fromDay; day <= toDay; day++) {
+                AtomicLongArray page = pages.get(day >> PAGE_BITS);
+                if (page == null) {
+                    day |= PAGE_DAYS - 1;
+                    continue;
+                }
+                int from = (day & (PAGE_DAYS - 1)) * columns * 2;
+                int to = cell(fromDay, day, 0);
+                for (int i = 0; i < columns * 2; i++) {
+                    totals[to + i] = page.get(from + i);
+                }
+            }
+            return totals;
+        }
+        
+        /**
+         * The same figures as rollup(), computed by scanning the store's chunks in parallel.
+         */
+        long[] scan(int fromDay, int toDay) {
+            int size = (toDay - fromDay + 1) * roomTypes.length * 2;
+            return IntStream.range(0, store.chunkCount()).parallel().collect(
+                () -> new long[size],
+                (totals, chunk) -> store.forEachStay(chunk, (checkIn, checkOut, roomType, totalPrice) -> {
+                    int column = columnOf[roomType & 0xff];
+                    if (column < 0 || checkOut <= fromDay || checkIn > toDay) return;
+                    int nights = checkOut - checkIn;
+                    for (int day = Math.max(checkIn, fromDay); day < checkOut && day <= toDay; day++) {
+                        int cell = cell(fromDay, day, column);
+                        totals[cell]++;
+                        totals[cell + 1] += nightShare(totalPrice, nights, day - checkIn);
+                    }
+                }),
+                (a, b) -> {
+                    for (int i = 0; i < a.length; i++) a[i] += b[i];
+                });
+        }
+        
+        // Index of a day's sold room-nights for one column; revenue follows at + 1
+        private int cell(int fromDay, int day, int column) {
+            return ((day - fromDay) * roomTypes.length + column) * 2;
+        }
+        
+        /**
+         * Writes totals (from rollup or scan over [fromDay, toDay]) grouped into periods of
+         * "day", "week" (Monday to Sunday) or "month", clipped to the range, per room type
+         * with a total row, and the whole range at the end. column -1 means every type.
+         */
+        void write(JsonWriter json, long[] totals, int fromDay, int toDay, String period, int column) {
+            long[] range = new long[3];
+            json.name("periods").beginArray();
+            for (int start = fromDay; start <= toDay; ) {
+                int end = Math.min(periodEnd(start, period), toDay);
+                long[] sum = new long[3];
+                json.beginObject().dateField("start", start).dateField("end", end).name("roomTypes").beginArray();
+                for (int c = 0; c < roomTypes.length; c++) {
+                    if (column != -1 && c != column) continue;
+                    long[] row = { (long) totalRooms[c] * (end - start + 1), 0, 0 };
+                    for (int day = start; day <= end; day++) {
+                        row[1] += totals[cell(fromDay, day, c)];
+                        row[2] += totals[cell(fromDay, day, c) + 1];
+                    }
+                    json.beginObject().field("roomType", roomTypes[c]);
+                    writeFigures(json, row);
+                    json.endObject();
+                    for (int i = 0; i < 3; i++) sum[i] += row[i];
+                }
+                json.endArray().name("total").beginObject();
+                writeFigures(json, sum);
+                json.endObject().endObject();
+                for (int i = 0; i < 3; i++) range[i] += sum[i];
+                start = end + 1;
+            }
+            json.endArray().name("total").beginObject();
+            writeFigures(json, range);
+            json.endObject();
+        }
+        
+        private static int periodEnd(int day, String period) {
+            switch (period) {
+                case "week": return day + 6 - Math.floorMod(day + 3, 7);
+                case "month": {
+                    LocalDate date = LocalDate.ofEpochDay(day);
+                    return (int) date.withDayOfMonth(date.lengthOfMonth()).toEpochDay();
+                }
+                default: return day;
+            }
+        }
+        
+        // figures: room-nights available, room-nights sold, revenue
+        private static void writeFigures(JsonWriter json, long[] figures) {
+            json.field("roomNightsAvailable", figures[0])
+                .field("roomNightsSold", figures[1])
+                .field("revenue", figures[2])
+                .field("occupancy", 100.0 * figures[1] / figures[0])
+                .field("adr", (double) figures[2] / figures[1])
+                .field("revpar", (double) figures[2] / figures[0]);
+        }
+    }
+    
+    /**
+     * Secondary indexes by guest name and room type, plus the query planner for listings.
+     * Names are bucketed by their lower-cased first NAME_KEY_LENGTH characters into plain
+     * id arrays, a few bytes per booking; a prefix query reads the matching buckets and
+     * re-checks each candidate. Room types get one bucket each; room numbers only mean
+     * something within a type, so a roomNumber filter narrows the type's bucket rather
+     * than having an index of its own. Date-range queries read the occupancy grid when
+     * that is cheaper, and everything else scans the store's columns in id order.
+     * Mutations are serialised on this object.
+     */
+    static class BookingIndexes implements BookingListener {
+        private static final int NAME_KEY_LENGTH = 3;
+        
+        private final BookingStore store;
+        private final OccupancyGrid grid;
+        private final ConcurrentSkipListMap<String, IdBucket> byName = new ConcurrentSkipListMap<>();
+        private final Map<String, IdBucket> byRoomType = new ConcurrentHashMap<>();
+        
+        BookingIndexes(BookingStore store, OccupancyGrid grid) {
+            this.store = store;
+            this.grid = grid;
+        }
+        
+        @Override
+        public synchronized void bookingCreated(Booking booking) {
+            byName.computeIfAbsent(nameKey(booking.name), k -> new IdBucket()).add(booking.id);
+            byRoomType.computeIfAbsent(booking.roomTypeName(), k -> new IdBucket()).add(booking.id);
+        }
+        
+        @Override
+        public synchronized void bookingUpdated(Booking before, Booking after) {
+            String oldKey = nameKey(before.name);
+            String newKey = nameKey(after.name);
+            if (!oldKey.equals(newKey)) {
+                removeFromName(oldKey, before.id);
+                byName.computeIfAbsent(newKey, k -> new IdBucket()).add(after.id);
+            }
+            if (before.roomType != after.roomType) {
+                remove(byRoomType, before.roomTypeName(), before.id);
+                byRoomType.computeIfAbsent(after.roomTypeName(), k -> new IdBucket()).add(after.id);
+            }
+        }
+        
+        @Override
+        public synchronized void bookingDeleted(Booking booking) {
+            removeFromName(nameKey(booking.name), booking.id);
+            remove(byRoomType, booking.roomTypeName(), booking.id);
+        }
+        
+        private void removeFromName(String key, int id) {
+            remove(byName, key, id);
+        }
+        
+        private static void remove(Map<String, IdBucket> index, String key, int id) {
+            IdBucket bucket = index.get(key);
+            if (bucket != null && bucket.remove(id) == 0) {
+                index.remove(key);
+            }
+        }
+        
+        private static String nameKey(String name) {
+            if (name == null) return "";
+            String key = name.length() > NAME_KEY_LENGTH ? name.substring(0, NAME_KEY_LENGTH) : name;
+            return key.toLowerCase(Locale.ROOT);
+        }
+        
+        /**
+         * Returns up to max bookings matching query in id order, starting after its cursor.
+         * Candidates come from the most selective index the query allows.
+         */
+        List<Booking> page(BookingQuery query, int max) {
+            List<Booking> page = new ArrayList<>();
+            if (query.toDay < query.fromDay) return page;
+            if (query.roomType != null && grid.slotBase(query.roomType) < 0) return page;
+            
+            if (query.namePrefix != null) {
+                String key = nameKey(query.namePrefix);
+                if (query.namePrefix.length() >= NAME_KEY_LENGTH) {
+                    IdBucket bucket = byName.get(key);
+                    if (bucket != null) walk(bucket, query, max, page);
+                    return page;
+                }
+                Set<Integer> candidates = new TreeSet<>();
+                for (IdBucket bucket : byName.subMap(key, key + Character.MAX_VALUE).values()) {
+                    bucket.addTo(candidates);
+                }
+                collect(candidates, query, max, page);
+                return page;
+            }
+            
+            IdBucket typeBucket = null;
+            if (query.roomType != null) {
+                typeBucket = byRoomType.get(query.roomType);
+                if (typeBucket == null) return page;
+            }
+            
+            if (query.hasDateRange()) {
+                int fromDay = (int) Math.max(query.fromDay, grid.firstDay());
+                int toDay = (int) Math.min(query.toDay, grid.lastDay());
+                int[] slots = slots(query);
+                // Walk the grid only when it is cheaper than the type's bucket or the remaining ids
+                long scanCost = typeBucket != null ? typeBucket.size() : (long) store.maxId() - query.afterId;
+                if ((long) (toDay - fromDay + 1) * slots.length <= scanCost) {
+                    // Free cells hold 0 and held ones a negative hold id; neither is a booking
+                    int afterId = Math.max(query.afterId, 0);
+                    Set<Integer> candidates = new TreeSet<>();
+                    for (int day = fromDay; day <= toDay; day++) {
+                        for (int slot : slots) {
+                            int id = grid.bookingAt(day, slot);
+                            if (id > afterId) candidates.add(id);
+                        }
+                    }
+                    collect(candidates, query, max, page);
+                    return page;
+                }
+            }
+            
+            if (typeBucket != null) {
+                walk(typeBucket, query, max, page);
+                return page;
+            }
+            
+            for (int id = Math.max(query.afterId + 1, store.firstId()); id <= store.maxId() && page.size() < max; id++) {
+                if (store.matches(id, query)) {
+                    Booking booking = store.get(id);
+                    if (booking != null && query.matches(booking)) page.add(booking);
+                }
+            }
+            return page;
+        }
+        
+        private int[] slots(BookingQuery query) {
+            if (query.roomType == null) {
+                int[] all = new int[grid.slotCount()];
+                for (int i = 0; i < all.length; i++) all[i] = i;
+                return all;
+            }
+            if (query.roomNumber != -1) {
+                int slot = grid.slot(query.roomType, query.roomNumber);
+                return slot < 0 ? new int[0] : new int[] { slot };
+            }
+            int base = grid.slotBase(query.roomType);
+            int[] slots = new int[grid.roomCount(query.roomType)];
+            for (int i = 0; i < slots.length; i++) slots[i] = base + i;
+            return slots;
+        }
+        
+        /**
+         * Ids of the bookings of roomType, ascending.
+         */
+        int[] idsOfType(String roomType) {
+            IdBucket bucket = byRoomType.get(roomType);
+            return bucket != null ? bucket.toArray() : new int[0];
+        }
+        
+        /**
+         * Walks one sorted bucket from the cursor, stopping once the page is full.
+         */
+        private void walk(IdBucket bucket, BookingQuery query, int max, List<Booking> page) {
+            for (int id = bucket.nextAfter(query.afterId); id != -1 && page.size() < max; id = bucket.nextAfter(id)) {
+                Booking booking = store.get(id);
+                if (booking != null && query.matches(booking)) page.add(booking);
+            }
+        }
+        
+        private void collect(Set<Integer> candidates, BookingQuery query, int max, List<Booking> page) {
+            for (int id : candidates) {
+                if (id <= query.afterId) continue;
+                Booking booking = store.get(id);
+                if (booking != null && query.matches(booking)) {
+                    page.add(booking);
+                    if (page.size() == max) break;
+                }
+            }
+        }
+        
+        /**
+         * Sorted ids sharing an index key. New bookings have the highest ids so adds are
+         * appends; renames and deletes shift the tail. Guarded by its own monitor so
+         * readers can walk it while the index is being updated.
+         */
+        static class IdBucket {
+            private int[] ids = new int[4];
+            private int size;
+            
+            synchronized void add(int id) {
+                if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+                int at = size == 0 || ids[size - 1] < id ? size : insertionPoint(id);
+                System.arraycopy(ids, at, ids, at + 1, size - at);
+                ids[at] = id;
+                size++;
+            }
+            
+            synchronized int remove(int id) {
+                int at = Arrays.binarySearch(ids, 0, size, id);
+                if (at >= 0) {
+                    System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                    size--;
+                }
+                return size;
+            }
+            
+            synchronized int size() {
+                return size;
+            }
+            
+            synchronized int[] toArray() {
+                return Arrays.copyOf(ids, size);
+            }
+            
+            /**
+             * Smallest id in the bucket greater than afterId, or -1.
+             */
+            synchronized int nextAfter(int afterId) {
+                int at = afterId == Integer.MAX_VALUE ? size : insertionPoint(afterId + 1);
+                return at < size ? ids[at] : -1;
+            }
+            
+            private int insertionPoint(int id) {
+                int at = Arrays.binarySearch(ids, 0, size, id);
+                return at >= 0 ? at : -at - 1;
+            }
+            
+            synchronized void addTo(Set<Integer> target) {
+                for (int i = 0; i < size; i++) target.add(ids[i]);
+            }
+        }
+    }
+    
+    /**
+     * Rooms booked per night for each room type, kept up to date from listener calls, so
+     * the free rooms of a type over a stay come from one range query rather than a walk
+     * over every room and night.
+     */
+    static class AvailabilityIndex implements BookingListener {
+        private final Map<String, RoomInfo> inventory;
+        private final Map<String, NightlyCounts> byType = new HashMap<>();
+        
+        AvailabilityIndex(Map<String, RoomInfo> inventory) {
+            this.inventory = inventory;
+            for (String roomType : inventory.keySet()) {
+                byType.put(roomType, new NightlyCounts());
+            }
+        }
+        
+        /**
+         * The fewest free rooms of roomType on any night of [checkInDay, checkOutDay); -1 if
+         * the type is unknown. This bounds how many rooms can take the whole stay, but free
+         * nights split across rooms count too: BookingEngine.roomsFreeForStay has the real number.
+         */
+        int freeRooms(String roomType, int checkInDay, int checkOutDay) {
+            NightlyCounts counts = byType.get(roomType);
+            if (counts == null) return -1;
+            return inventory.get(roomType).totalRooms - counts.max(checkInDay, checkOutDay);
+        }
+        
+        @Override
+        public void bookingCreated(Booking booking) {
+            counts(booking).add(booking.checkInDay, booking.checkOutDay, 1);
+        }
+        
+        @Override
+        public void bookingUpdated(Booking before, Booking after) {
+            // Room changes alone, such as repacks, leave every night's count as it was
+            if (before.roomType == after.roomType && before.checkInDay == after.checkInDay
+                    && before.checkOutDay == after.checkOutDay) return;
+            counts(before).add(before.checkInDay, before.checkOutDay, -1);
+            counts(after).add(after.checkInDay, after.checkOutDay, 1);
+        }
+        
+        @Override
+        public void bookingDeleted(Booking booking) {
+            counts(booking).add(booking.checkInDay, booking.checkOutDay, -1);
+        }
+        
+        /**
+         * Holds take rooms without being bookings; the engine reports them here.
+         */
+        void holdChanged(String roomType, int checkInDay, int checkOutDay, int delta) {
+            byType.get(roomType).add(checkInDay, checkOutDay, delta);
+        }
+        
+        private NightlyCounts counts(Booking booking) {
+            return byType.get(booking.roomTypeName());
+        }
+    }
+    
+    /**
+     * Per-night counts over every bookable day in a segment tree with range add and range
+     * max. Nodes are only allocated where stays have fallen, so memory follows the booked
+     * span rather than the calendar, and both operations take O(log days). A node's max
+     * includes its own add, so adds are never pushed down to children.
+     */
+    static class NightlyCounts {
+        private static final int FIRST_DAY = BookingEngine.FIRST_DAY;
+        private static final int END_DAY = BookingEngine.LAST_DAY + 1;
+        // A node's left child, right child, max and add sit side by side in one array
+        private static final int LEFT = 0;
+        private static final int RIGHT = 1;
+        private static final int MAX = 2;
+        private static final int ADD = 3;
+        
+        // Node 0 stands for any untouched subtree (all zero), node 1 is the root
+        private int[] tree = new int[64 * 4];
+        private int nodes = 2;
+        
+        synchronized void add(int fromDay, int toDay, int delta) {
+            add(1, FIRST_DAY, END_DAY, Math.max(fromDay, FIRST_DAY), Math.min(toDay, END_DAY), delta);
+        }
+        
+        /**
+         * Highest count on any day of [fromDay, toDay).
+         */
+        synchronized int max(int fromDay, int toDay) {
+            fromDay = Math.max(fromDay, FIRST_DAY);
+            toDay = Math.min(toDay, END_DAY);
+            return fromDay < toDay ? max(1, FIRST_DAY, END_DAY, fromDay, toDay) : 0;
+        }
+        
+        private void add(int node, int lo, int hi, int from, int to, int delta) {
+            int at = node * 4;
+            if (from <= lo && hi <= to) {
+                tree[at + ADD] += delta;
+                tree[at + MAX] += delta;
+                return;
+            }
+            int mid = lo + (hi - lo) / 2;
+            if (from < mid) {
+                add(child(at + LEFT), lo, mid, from, to, delta);
+            }
+            if (to > mid) {
+                add(child(at + RIGHT), mid, hi, from, to, delta);
+            }
+            tree[at + MAX] = tree[at + ADD] + Math.max(tree[tree[at + LEFT] * 4 + MAX], tree[tree[at + RIGHT] * 4 + MAX]);
+        }
+        
+        private int max(int node, int lo, int hi, int from, int to) {
+            if (node == 0) return 0;
+            int at = node * 4;
+            if (from <= lo && hi <= to) return tree[at + MAX];
+            int mid = lo + (hi - lo) / 2;
+            // Counts are never negative, so 0 is a safe start for the halves' max
+            int result = 0;
+            if (from < mid) result = max(tree[at + LEFT], lo, mid, from, to);
+            if (to > mid) result = Math.max(result, max(tree[at + RIGHT], mid, hi, from, to));
+            return tree[at + ADD] + result;
+        }
+        
+        /**
+         * The child stored at link, allocated on first use.
+         */
+        private int child(int link) {
+            if (tree[link] == 0) {
+                if (nodes * 4 == tree.length) {
+                    tree = Arrays.copyOf(tree, tree.length * 2);
+                }
+                tree[link] = nodes++;
+            }
+            return tree[link];
+        }
+    }
+    
+    /**
+     * Dictionary of room type names to the byte ordinals stored with each booking.
+     * Ordinals are handed out on first use and never reused.
+     */
+    static class RoomTypes {
+        private static final Map<String, Byte> ORDINALS = new ConcurrentHashMap<>();
+        private static final List<String> NAMES = new CopyOnWriteArrayList<>();
+        
+        static byte ordinal(String name) {
+            Byte ordinal = ORDINALS.get(name);
+            return ordinal != null ? ordinal : register(name);
+        }
+        
+        private static synchronized byte register(String name) {
+            Byte ordinal = ORDINALS.get(name);
+            if (ordinal != null) return ordinal;
+            if (NAMES.size() > 255) {
+                throw new IllegalStateException("Too many room types");
+            }
+            NAMES.add(name);
+            byte assigned = (byte) (NAMES.size() - 1);
+            ORDINALS.put(name, assigned);
+            return assigned;
+        }
+        
+        static String name(byte ordinal) {
+            return NAMES.get(ordinal & 0xFF);
+        }
+    }
+    
+    /**
+     * Columnar booking storage: one primitive array per field, addressed by id - firstId
+     * and split into fixed-size chunks so growth never copies existing rows. Dates are
+     * epoch days, the room type is a RoomTypes ordinal and guest names are UTF-8 bytes in
+     * a per-chunk pool, for roughly 26 bytes plus the name per booking and no object per
+     * row. Booking objects are only materialised on the way out.
+     *
+     * Rows are written and materialised under their chunk's monitor so a reader never sees
+     * half an update. Scans may read the primitive columns without it and re-check on the
+     * materialised booking.
+     */
+    static class BookingStore {
+        private static final int CHUNK_BITS = 14;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        
+        private final int firstId;
+        private volatile Chunk[] chunks = new Chunk[0];
+        private final AtomicInteger live = new AtomicInteger();
+        private volatile int maxId;
+        
+        BookingStore(int firstId) {
+            this.firstId = firstId;
+            this.maxId = firstId - 1;
+        }
+        
+        int firstId() {
+            return firstId;
+        }
+        
+        /**
+         * Highest id ever stored; every live id lies in [firstId, maxId].
+         */
+        int maxId() {
+            return maxId;
+        }
+        
+        int size() {
+            return live.get();
+        }
+        
+        /**
+         * Inserts or overwrites the row for booking.id.
+         */
+        void put(Booking booking) {
+            int row = booking.id - firstId;
+            if (row < 0) {
+                throw new IllegalArgumentException("Booking id below " + firstId + ": " + booking.id);
+            }
+            Chunk chunk = chunkForWrite(row >>> CHUNK_BITS);
+            int i = row & (CHUNK_SIZE - 1);
+            synchronized (chunk) {
+                if (!chunk.live[i]) live.incrementAndGet();
+                chunk.checkInDay[i] = booking.checkInDay;
+                chunk.checkOutDay[i] = booking.checkOutDay;
+                chunk.guests[i] = booking.guests;
+                chunk.totalPrice[i] = booking.totalPrice;
+                chunk.roomType[i] = booking.roomType;
+                chunk.roomNumber[i] = (short) booking.roomNumber;
+                chunk.setName(i, booking.name);
+                chunk.live[i] = true;
+            }
+            if (booking.id > maxId) {
+                synchronized (this) {
+                    if (booking.id > maxId) maxId = booking.id;
+                }
+            }
+        }
+        
+        Booking get(int id) {
+            Chunk chunk = chunk(id);
+            if (chunk == null) return null;
+            int i = (id - firstId) & (CHUNK_SIZE - 1);
+            synchronized (chunk) {
+                if (!chunk.live[i]) return null;
+                return new Booking(id, chunk.name(i), chunk.checkInDay[i], chunk.checkOutDay[i], chunk.guests[i],
+                    chunk.roomType[i], chunk.roomNumber[i], chunk.totalPrice[i]);
+            }
+        }
+        
+        String name(int id) {
+            Chunk chunk = chunk(id);
+            if (chunk == null) return null;
+            int i = (id - firstId) & (CHUNK_SIZE - 1);
+            synchronized (chunk) {
+                return chunk.live[i] ? chunk.name(i) : null;
+            }
+        }
+        
+        boolean contains(int id) {
+            Chunk chunk = chunk(id);
+            return chunk != null && chunk.live[(id - firstId) & (CHUNK_SIZE - 1)];
+        }
+        
+        void remove(int id) {
+            Chunk chunk = chunk(id);
+            if (chunk == null) return;
+            int i = (id - firstId) & (CHUNK_SIZE - 1);
+            synchronized (chunk) {
+                if (chunk.live[i]) {
+                    chunk.live[i] = false;
+                    chunk.setName(i, null);
+                    live.decrementAndGet();
+                }
+            }
+        }
+        
+        /**
+         * Unlocked pre-filter on the primitive columns, see BookingQuery.matches.
+         */
+        boolean matches(int id, BookingQuery query) {
+            Chunk chunk = chunk(id);
+            if (chunk == null) return false;
+            int i = (id - firstId) & (CHUNK_SIZE - 1);
+            return chunk.live[i] && query.matches(id, chunk.roomType[i], chunk.roomNumber[i],
+                chunk.checkInDay[i], chunk.checkOutDay[i]);
+        }
+        
+        interface StayVisitor {
+            void visit(int checkInDay, int checkOutDay, byte roomType, int totalPrice);
+        }
+        
+        int chunkCount() {
+            return chunks.length;
+        }
+        
+        /**
+         * Visits the live rows of one chunk straight from its columns, under the chunk lock;
+         * lets aggregations split the store by chunk without materialising bookings.
+         */
+        void forEachStay(int chunkIndex, StayVisitor visitor) {
+            Chunk chunk = chunks[chunkIndex];
+            if (chunk == null) return;
+            synchronized (chunk) {
+                for (int i = 0; i < CHUNK_SIZE; i++) {
+                    if (chunk.live[i]) {
+                        visitor.visit(chunk.checkInDay[i], chunk.checkOutDay[i], chunk.roomType[i], chunk.totalPrice[i]);
+                    }
+                }
+            }
+        }
+        
+        Iterable<Booking> bookings() {
+            return () -> new Iterator<Booking>() {
+                private int nextId = firstId;
+                private Booking next;
+                
+                @Override
+                public boolean hasNext() {
+                    while (next == null && nextId <= maxId) {
+                        next = get(nextId++);
+                    }
+                    return next != null;
+                }
+                
+                @Override
+                public Booking next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    Booking booking = next;
+                    next = null;
+                    return booking;
+                }
+            };
+        }
+        
+        private Chunk chunk(int id) {
+            int row = id - firstId;
+            if (row < 0) return null;
+            Chunk[] current = chunks;
+            int index = row >>> CHUNK_BITS;
+            return index < current.length ? current[index] : null;
+        }
+        
+        private Chunk chunkForWrite(int index) {
+            Chunk[] current = chunks;
+            if (index < current.length && current[index] != null) return current[index];
+            synchronized (this) {
+                current = chunks;
+                if (index >= current.length) {
+                    current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+                }
+                if (current[index] == null) {
+                    current[index] = new Chunk();
+                }
+                chunks = current;
+                return current[index];
+            }
+        }
+        
+        static class Chunk {
+            final boolean[] live = new boolean[CHUNK_SIZE];
+            final int[] checkInDay = new int[CHUNK_SIZE];
+            final int[] checkOutDay = new int[CHUNK_SIZE];
+            final int[] guests = new int[CHUNK_SIZE];
+            final int[] totalPrice = new int[CHUNK_SIZE];
+            final byte[] roomType = new byte[CHUNK_SIZE];
+            final short[] roomNumber = new short[CHUNK_SIZE];
+            final int[] nameOffset = new int[CHUNK_SIZE];
+            final short[] nameLength = new short[CHUNK_SIZE];
+            private byte[] names = new byte[CHUNK_SIZE * 4];
+            private int namesUsed;
+            
+            Chunk() {
+                Arrays.fill(nameLength, (short) -1);
+            }
+            
+            String name(int i) {
+                int length = nameLength[i];
+                return length < 0 ? null : new String(names, nameOffset[i], length, StandardCharsets.UTF_8);
+            }
+            
+            void setName(int i, String name) {
+                if (name == null) {
+                    nameLength[i] = -1;
+                    return;
+                }
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > Short.MAX_VALUE) {
+                    bytes = Arrays.copyOf(bytes, Short.MAX_VALUE);
+                }
+                // Renamed and deleted rows leave their old bytes behind; drop them when the pool fills
+                nameLength[i] = -1;
+                if (namesUsed + bytes.length > names.length) {
+                    compactNames(bytes.length);
+                }
+                System.arraycopy(bytes, 0, names, namesUsed, bytes.length);
+                nameOffset[i] = namesUsed;
+                nameLength[i] = (short) bytes.length;
+                namesUsed += bytes.length;
+            }
+            
+            private void compactNames(int extra) {
+                int used = 0;
+                for (int i = 0; i < CHUNK_SIZE; i++) {
+                    if (nameLength[i] > 0) used += nameLength[i];
+                }
+                byte[] compacted = new byte[Math.max(names.length, (used + extra) * 2)];
+                int offset = 0;
+                for (int i = 0; i < CHUNK_SIZE; i++) {
+                    if (nameLength[i] > 0) {
+                        System.arraycopy(names, nameOffset[i], compacted, offset, nameLength[i]);
+                        nameOffset[i] = offset;
+                        offset += nameLength[i];
+                    }
+                }
+                names = compacted;
+                namesUsed = offset;
+            }
+        }
+    }
+    
+    /**
+     * Append-only write-ahead journal of booking changes with group commit. Request threads
+     * only enqueue records; a single writer thread drains whatever has queued up, writes
+     * it and issues one fsync for the whole batch. Every record carries the full booking
+     * state, so replay is a sequence of upserts and deletes by id.
+     *
+     * Journal segments are rotated when a snapshot starts. The snapshot is taken after the
+     * rotation, so it already reflects every record in the older segments, which are
+     * then deleted. Startup loads the snapshot and replays the remaining segments.
+     */
+    static class BookingJournal implements BookingListener {
+        private static final byte DELETE = 3;
+        private static final byte CREATE = 4;
+        private static final byte UPDATE = 5;
+        // A whole group booking in one record, so a crash never leaves half of it
+        private static final byte CREATE_GROUP = 6;
+        private static final int SNAPSHOT_MAGIC = 0x484F5432; // "HOT2"
+        private static final long COMMIT_TIMEOUT_SECONDS = 10;
+        
+        private final File dir;
+        private final long snapshotEvery;
+        private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+        private final ThreadLocal<PendingWrite> lastWrite = new ThreadLocal<>();
+        private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        private final Thread writer;
+        private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        
+        private BookingEngine engine;
+        private FileChannel channel;
+        private long segment;
+        private long sinceSnapshot;
+        private volatile boolean running = true;
+        
+        private BookingJournal(File dir, long snapshotEvery) {
+            this.dir = dir;
+            this.snapshotEvery = snapshotEvery;
+            this.writer = new Thread(this::writeLoop, "journal-writer");
+            this.writer.setDaemon(true);
+        }
+        
+        /**
+         * Opens the journal in dir, recovers its bookings into engine and starts journaling.
+         */
+        static BookingJournal open(File dir, long snapshotEvery, BookingEngine engine) throws IOException {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create data directory " + dir);
+            }
+            BookingJournal journal = new BookingJournal(dir, snapshotEvery);
+            BookingStore recovered = journal.recover();
+            journal.engine = engine;
+            engine.attachJournal(journal, recovered);
+            journal.writer.start();
+            return journal;
+        }
+        
+        // Recovery
+        
+        private BookingStore recover() throws IOException {
+            BookingStore state = new BookingStore(1000);
+            long firstSegment = 1;
+            
+            File snapshot = new File(dir, "snapshot.dat");
+            if (snapshot.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot), 1 << 16))) {
+                    int magic = in.readInt();
+                    if (magic != SNAPSHOT_MAGIC) {
+                        throw new IOException("Corrupt snapshot " + snapshot);
+                    }
+                    firstSegment = in.readLong();
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        state.put(readBooking(in));
+                    }
+                }
+            }
+            
+            List<Long> segments = listSegments();
+            long last = firstSegment - 1;
+            for (long seg : segments) {
+                if (seg < firstSegment) continue;
+                replaySegment(segmentFile(seg), state);
+                last = seg;
+            }
+            
+            segment = Math.max(last, firstSegment);
+            channel = FileChannel.open(segmentFile(segment).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return state;
+        }
+        
+        /**
+         * Applies a segment's records to state up to the first one that is cut short, fails
+         * its CRC or does not decode, and truncates the file there: that is where a crash
+         * stopped writing, be it mid-record or over preallocated zeros.
+         */
+        private void replaySegment(File file, BookingStore state) throws IOException {
+            long good = 0;
+            long size = file.length();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                while (size - good >= 8) {
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    // Bounded by the bytes left, so a garbage length cannot ask for a huge array
+                    if (length <= 0 || length > size - good - 8) break;
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 check = new CRC32();
+                    check.update(payload);
+                    if ((int) check.getValue() != crc) break;
+                    
+                    List<Booking> bookings = new ArrayList<>();
+                    int deleted = decode(payload, bookings);
+                    if (deleted == -1) break;
+                    if (deleted != 0) {
+                        state.remove(deleted);
+                    }
+                    for (Booking booking : bookings) {
+                        state.put(booking);
+                    }
+                    good += 8 + length;
+                }
+            }
+            
+            // Drop a torn tail left by a crash mid-write so new records append cleanly
+            if (good < file.length()) {
+                System.out.println("⚠️ Truncating torn journal tail in " + file.getName() + " at byte " + good);
+                try (FileChannel truncate = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    truncate.truncate(good);
+                }
+            }
+        }
+        
+        /**
+         * Reads one record's bookings into bookings, or returns the id it deletes; -1 if the
+         * record does not decode.
+         */
+        private static int decode(byte[] payload, List<Booking> bookings) {
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            try {
+                byte type = record.readByte();
+                if (type == DELETE) {
+                    int id = record.readInt();
+                    return record.available() == 0 && id > 0 ? id : -1;
+                }
+                if (type == CREATE_GROUP) {
+                    for (int i = record.readInt(); i > 0; i--) {
+                        bookings.add(readBooking(record));
+                    }
+                } else if (type == CREATE || type == UPDATE) {
+                    bookings.add(readBooking(record));
+                } else {
+                    return -1;
+                }
+                return record.available() == 0 ? 0 : -1;
+            } catch (IOException | RuntimeException e) {
+                return -1;
+            }
+        }
+        
+        // Write path
+        
+        @Override
+        public void bookingCreated(Booking booking) {
+            append(CREATE, booking);
+        }
+        
+        @Override
+        public void bookingUpdated(Booking before, Booking after) {
+            append(UPDATE, after);
+        }
+        
+        @Override
+        public void bookingDeleted(Booking booking) {
+            append(DELETE, booking);
+        }
+        
+        @Override
+        public void bookingsCreated(List<Booking> bookings) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(64 * bookings.size() + 8);
+            try (DataOutputStream out = new DataOutputStream(payload)) {
+                out.writeByte(CREATE_GROUP);
+                out.writeInt(bookings.size());
+                for (Booking booking : bookings) {
+                    writeBooking(out, booking);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            enqueue(payload.toByteArray());
+        }
+        
+        private void append(byte type, Booking booking) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(96);
+            try (DataOutputStream out = new DataOutputStream(payload)) {
+                out.writeByte(type);
+                if (type == DELETE) {
+                    out.writeInt(booking.id);
+                } else {
+                    writeBooking(out, booking);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            enqueue(payload.toByteArray());
+        }
+        
+        private void enqueue(byte[] record) {
+            PendingWrite write = new PendingWrite(record);
+            lastWrite.set(write);
+            if (!running) {
+                write.done.completeExceptionally(new IOException("Journal closed"));
+                return;
+            }
+            queue.add(write);
+        }
+        
+        /**
+         * Waits for the calling thread's last record. False if it failed, the journal closed
+         * before writing it, or it took longer than COMMIT_TIMEOUT_SECONDS.
+         */
+        boolean awaitCommitted() {
+            PendingWrite write = lastWrite.get();
+            if (write == null) return true;
+            lastWrite.remove();
+            // Batches are flushed in queue order, so the thread's last record covers the earlier ones
+            try {
+                write.done.get(COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                return true;
+            } catch (ExecutionException | TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        
+        private void writeLoop() {
+            List<PendingWrite> batch = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            
+            while (running || !queue.isEmpty()) {
+                try {
+                    PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    queue.drainTo(batch, 8191);
+                    
+                    synchronized (this) {
+                        for (PendingWrite write : batch) {
+                            if (buffer.remaining() < write.record.length + 8) {
+                                flush(buffer);
+                            }
+                            if (write.record.length + 8 > buffer.capacity()) {
+                                channel.write(ByteBuffer.wrap(frame(write.record)));
+                                continue;
+                            }
+                            CRC32 crc = new CRC32();
+                            crc.update(write.record);
+                            buffer.putInt(write.record.length).putInt((int) crc.getValue()).put(write.record);
+                        }
+                        flush(buffer);
+                        channel.force(false);
+                    }
+                    
+                    batches.increment();
+                    records.add(batch.size());
+                    for (PendingWrite write : batch) {
+                        write.done.complete(null);
+                    }
+                    
+                    sinceSnapshot += batch.size();
+                    if (snapshotEvery > 0 && sinceSnapshot >= snapshotEvery) {
+                        sinceSnapshot = 0;
+                        requestSnapshot();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                } catch (IOException e) {
+                    System.out.println("❌ Journal write failed: " + e.getMessage());
+                    for (PendingWrite write : batch) {
+                        write.done.completeExceptionally(e);
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+        
+        private void flush(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        private static byte[] frame(byte[] record) {
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            return ByteBuffer.allocate(record.length + 8).putInt(record.length).putInt((int) crc.getValue()).put(record).array();
+        }
+        
+        // Snapshots
+        
+        void requestSnapshot() {
+            if (snapshotRunning.compareAndSet(false, true)) {
+                snapshotter.execute(() -> {
+                    try {
+                        snapshot();
+                    } catch (IOException e) {
+                        System.out.println("❌ Snapshot failed: " + e.getMessage());
+                    } finally {
+                        snapshotRunning.set(false);
+                    }
+                });
+            }
+        }
+        
+        /**
+         * Rotates to a new segment, then writes every live booking to a snapshot that
+         * replaces all older segments.
+         */
+        void snapshot() throws IOException {
+            long firstUncovered;
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                segment++;
+                channel = FileChannel.open(segmentFile(segment).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                firstUncovered = segment;
+            }
+            
+            // Anything journaled before the rotation is already in memory; later changes
+            // land in the new segment and are replayed on top of this snapshot. Rows are
+            // streamed out one at a time and the count is patched in at the end.
+            File tmp = new File(dir, "snapshot.tmp");
+            try (RandomAccessFile file = new RandomAccessFile(tmp, "rw");
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.getFD()), 1 << 16))) {
+                file.setLength(0);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(firstUncovered);
+                out.writeInt(0);
+                int count = 0;
+                for (Booking booking : engine.bookings()) {
+                    writeBooking(out, booking);
+                    count++;
+                }
+                out.flush();
+                file.seek(12);
+                file.writeInt(count);
+                file.getFD().sync();
+            }
+            Files.move(tmp.toPath(), new File(dir, "snapshot.dat").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            for (long seg : listSegments()) {
+                if (seg < firstUncovered) {
+                    Files.deleteIfExists(segmentFile(seg).toPath());
+                }
+            }
+        }
+        
+        void close() {
+            running = false;
+            try {
+                writer.join(5000);
+                synchronized (this) {
+                    channel.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.out.println("❌ Journal close failed: " + e.getMessage());
+            }
+            // Whatever the writer did not get to is lost; its waiters must not hang
+            IOException closed = new IOException("Journal closed");
+            for (PendingWrite write; (write = queue.poll()) != null; ) {
+                write.done.completeExceptionally(closed);
+            }
+            snapshotter.shutdown();
+        }
+        
+        long recordCount() {
+            return records.sum();
+        }
+        
+        long commitCount() {
+            return batches.sum();
+        }
+        
+        String stats() {
+            long batchCount = batches.sum();
+            return String.format("📒 Journal: %d records in %d group commits (avg %.1f per fsync)",
+                records.sum(), batchCount, batchCount == 0 ? 0.0 : (double) records.sum() / batchCount);
+        }
+        
+        // Files and encoding
+        
+        private File segmentFile(long seg) {
+            return new File(dir, String.format("journal-%08d.log", seg));
+        }
+        
+        private List<Long> listSegments() {
+            List<Long> segments = new ArrayList<>();
+            String[] names = dir.list();
+            if (names != null) {
+                for (String name : names) {
+                    if (name.startsWith("journal-") && name.endsWith(".log")) {
+                        segments.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                    }
+                }
+            }
+            Collections.sort(segments);
+            return segments;
+        }
+        
+        // The room type is written by name so ordinals never leak into the files
+        private static void writeBooking(DataOutputStream out, Booking booking) throws IOException {
+            out.writeInt(booking.id);
+            writeString(out, booking.name);
+            out.writeInt(booking.checkInDay);
+            out.writeInt(booking.checkOutDay);
+            out.writeInt(booking.guests);
+            out.writeUTF(booking.roomTypeName());
+            out.writeInt(booking.roomNumber);
+            out.writeInt(booking.totalPrice);
+        }
+        
+        private static Booking readBooking(DataInputStream in) throws IOException {
+            return new Booking(in.readInt(), readString(in), in.readInt(), in.readInt(), in.readInt(),
+                RoomTypes.ordinal(in.readUTF()), in.readInt(), in.readInt());
+        }
+        
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) out.writeUTF(value);
+        }
+        
+        private static String readString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+        
+        static class PendingWrite {
+            final byte[] record;
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+            
+            PendingWrite(byte[] record) {
+                this.record = record;
+            }
+        }
+    }
+    
+    /**
+     * Materialised epoch day x room slot grid of booking ids, 0 meaning free. Slots number
+     * every room of every type consecutively in inventory order, and each slot has its own
+     * lock: writers fill or clear a room's cells only while holding it, taking two rooms'
+     * locks in slot order when a booking moves. Reads are lock-free, so a single-date
+     * availability read is one row and "is this room free for [checkIn, checkOut)" is one
+     * load per night. Rows are allocated in pages of PAGE_DAYS days.
+     */
+    static class OccupancyGrid {
+        private static final int PAGE_BITS = 6;
+        private static final int PAGE_DAYS = 1 << PAGE_BITS;
+        
+        private final Map<String, Integer> slotBases = new HashMap<>();
+        private final Map<String, Integer> roomCounts = new HashMap<>();
+        private final int slotCount;
+        private final Object[] locks;
+        private volatile PageTable table = new PageTable(0, 0);
+        private volatile int firstDay = Integer.MAX_VALUE;
+        private volatile int lastDay = Integer.MIN_VALUE;
+        
+        OccupancyGrid(Map<String, RoomInfo> inventory) {
+            int slot = 0;
+            for (Map.Entry<String, RoomInfo> entry : inventory.entrySet()) {
+                slotBases.put(entry.getKey(), slot);
+                roomCounts.put(entry.getKey(), entry.getValue().totalRooms);
+                slot += entry.getValue().totalRooms;
+            }
+            this.slotCount = slot;
+            this.locks = new Object[slot];
+            for (int i = 0; i < slot; i++) {
+                locks[i] = new Object();
+            }
+        }
+        
+        int slotCount() {
+            return slotCount;
+        }
+        
+        /**
+         * First slot of roomType, or -1 if the type is unknown.
+         */
+        int slotBase(String roomType) {
+            return slotBases.getOrDefault(roomType, -1);
+        }
+        
+        int roomCount(String roomType) {
+            return roomCounts.getOrDefault(roomType, 0);
+        }
+        
+        int slot(String roomType, int roomNumber) {
+            Integer base = slotBases.get(roomType);
+            if (base == null || roomNumber < 1 || roomNumber > roomCounts.get(roomType)) return -1;
+            return base + roomNumber - 1;
+        }
+        
+        Object lock(int slot) {
+            return locks[slot];
+        }
+        
+        /**
+         * Earliest and latest day ever filled; the grid is empty beyond them.
+         */
+        int firstDay() {
+            return firstDay;
+        }
+        
+        int lastDay() {
+            return lastDay;
+        }
+        
+        int bookingAt(int day, int slot) {
+            AtomicIntegerArray page = table.page(day >> PAGE_BITS);
+            return page != null ? page.get((day & (PAGE_DAYS - 1)) * slotCount + slot) : 0;
+        }
+        
+        boolean isFree(int slot, int checkInDay, int checkOutDay) {
+            for (int day = checkInDay; day < checkOutDay; day++) {
+                if (bookingAt(day, slot) != 0) return false;
+            }
+            return true;
+        }
+        
+        void fill(int slot, int checkInDay, int checkOutDay, int bookingId) {
+            for (int day = checkInDay; day < checkOutDay; day++) {
+                AtomicIntegerArray page = table.page(day >> PAGE_BITS);
+                if (page == null) page = createPage(day >> PAGE_BITS);
+                page.set((day & (PAGE_DAYS - 1)) * slotCount + slot, bookingId);
+            }
+            if (checkInDay < firstDay || checkOutDay - 1 > lastDay) {
+                synchronized (this) {
+                    if (checkInDay < firstDay) firstDay = checkInDay;
+                    if (checkOutDay - 1 > lastDay) lastDay = checkOutDay - 1;
+                }
+            }
+        }
+        
+        void clear(int slot, int checkInDay, int checkOutDay, int bookingId) {
+            for (int day = checkInDay; day < checkOutDay; day++) {
+                AtomicIntegerArray page = table.page(day >> PAGE_BITS);
+                if (page == null) continue;
+                int cell = (day & (PAGE_DAYS - 1)) * slotCount + slot;
+                if (page.get(cell) == bookingId) {
+                    page.set(cell, 0);
+                }
+            }
+        }
+        
+        private synchronized AtomicIntegerArray createPage(int pageIndex) {
+            PageTable current = table;
+            AtomicIntegerArray page = current.page(pageIndex);
+            if (page != null) return page;
+            
+            if (!current.covers(pageIndex)) {
+                int from = current.length == 0 ? pageIndex : Math.min(current.basePage, pageIndex);
+                int to = current.length == 0 ? pageIndex : Math.max(current.basePage + current.length - 1, pageIndex);
+                // Leave headroom on the side that grew so appending new dates stays amortised
+                int headroom = Math.max(8, (to - from + 1) / 2);
+                if (pageIndex < current.basePage) from -= headroom; else to += headroom;
+                PageTable grown = new PageTable(from, to - from + 1);
+                for (int i = 0; i < current.length; i++) {
+                    grown.pages.set(current.basePage - from + i, current.pages.get(i));
+                }
+                current = grown;
+            }
+            page = new AtomicIntegerArray(PAGE_DAYS * slotCount);
+            current.pages.set(pageIndex - current.basePage, page);
+            table = current;
+            return page;
+        }
+        
+        static class PageTable {
+            final int basePage;
+            final int length;
+            final AtomicReferenceArray<AtomicIntegerArray> pages;
+            
+            PageTable(int basePage, int length) {
+                this.basePage = basePage;
+                this.length = length;
+                this.pages = new AtomicReferenceArray<>(length);
+            }
+            
+            boolean covers(int pageIndex) {
+                return pageIndex >= basePage && pageIndex - basePage < length;
+            }
+            
+            AtomicIntegerArray page(int pageIndex) {
+                return covers(pageIndex) ? pages.get(pageIndex - basePage) : null;
+            }
+        }
+    }
+    
+    static class RoomInfo {
+        int pricePerNight;
+        int totalRooms;
+        
+        RoomInfo(int pricePerNight, int totalRooms) {
+            this.pricePerNight = pricePerNight;
+            this.totalRooms = totalRooms;
+        }
+    }
+    
+    static class RoomSlot {
+        int roomNumber;
+        boolean isBooked;
+        String guestName;
+        
+        RoomSlot(int roomNumber, boolean isBooked, String guestName) {
+            this.roomNumber = roomNumber;
+            this.isBooked = isBooked;
+            this.guestName = guestName;
+        }
+    }
+    
+    /**
+     * A booking as handed to handlers and listeners: a snapshot of one BookingStore row.
+     * Dates are epoch days and the room type a RoomTypes ordinal; strings are only made
+     * when a booking is rendered.
+     */
+    static class Booking {
+        final int id;
+        final String name;
+        final int checkInDay;
+        final int checkOutDay;
+        final int guests;
+        final byte roomType;
+        final int roomNumber;
+        final int totalPrice;
+        
+        Booking(int id, String name, int checkInDay, int checkOutDay, int guests,
+                byte roomType, int roomNumber, int totalPrice) {
+            this.id = id;
+            this.name = name;
+            this.checkInDay = checkInDay;
+            this.checkOutDay = checkOutDay;
+            this.guests = guests;
+            this.roomType = roomType;
+            this.roomNumber = roomNumber;
+            this.totalPrice = totalPrice;
+        }
+        
+        String roomTypeName() {
+            return RoomTypes.name(roomType);
+        }
+        
+        String checkIn() {
+            return LocalDate.ofEpochDay(checkInDay).toString();
+        }
+        
+        String checkOut() {
+            return LocalDate.ofEpochDay(checkOutDay).toString();
+        }
+        
+        int nights() {
+            return checkOutDay - checkInDay;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Booking #%d - %s - Room %d (%s) - ₹%d", 
+                id, name, roomNumber, roomTypeName(), totalPrice);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.DEFAULT_PROPERTY;
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.createServer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Node;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Requests against one node serving the default property on a loopback port.
+ */
+class BookingApiTest {
+    @TempDir
+    Path dataDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Node node;
+    private HttpServer server;
+
+    @BeforeEach
+    void startNode() throws IOException {
+        PropertyDirectory directory = new PropertyDirectory(dataDir.toFile(), 100000);
+        directory.add(DEFAULT_PROPERTY, ROOM_INVENTORY);
+        node = new Node(directory);
+        server = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            Map.of("rate-limits", "off"), node, null);
+        node.open(DEFAULT_PROPERTY);
+        server.start();
+    }
+
+    @AfterEach
+    void stopNode() {
+        server.stop(0);
+        node.close();
+    }
+
+    @Test
+    void longStaysAreBadRequests() throws IOException, InterruptedException {
+        String stay = "checkin=1900-01-01&checkout=9999-12-31&roomType=Suite+Room";
+        assertEquals(400, post("/api/book", "name=Forever&guests=1&" + stay).statusCode());
+        assertEquals(400, post("/api/holds", stay).statusCode());
+        assertEquals(400, post("/api/book/batch", "name=Forever&guests=1&" + stay).statusCode());
+        assertEquals(400, get("/api/rooms/search?" + stay).statusCode());
+
+        HttpResponse<String> booked = post("/api/book", "name=Guest&guests=1&checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room");
+        assertEquals(200, booked.statusCode());
+        assertEquals(400, post("/api/bookings/update", "bookingId=1000&name=Guest&guests=1&" + stay).statusCode());
+        assertEquals(200, post("/api/book", "name=Year&guests=1&checkin=2031-01-01&checkout=2032-01-01&roomType=Suite+Room").statusCode());
+    }
+
+    @Test
+    void holdsPastTheClientCapAreTooManyRequests() throws IOException, InterruptedException {
+        String stay = "checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room";
+        String first = null;
+        for (int i = 0; i < node.directory.maxHoldsPerClient; i++) {
+            HttpResponse<String> held = post("/api/holds", stay);
+            assertEquals(200, held.statusCode());
+            if (first == null) first = (String) Json.object(held.body()).get("holdId");
+        }
+        assertEquals(429, post("/api/holds", stay).statusCode());
+        assertEquals(Boolean.TRUE, Json.object(post("/api/holds/release", "holdId=" + first).body()).get("success"));
+        assertEquals(200, post("/api/holds", stay).statusCode());
+    }
+
+    @Test
+    void holdsAnswerOnlyToTheirToken() throws IOException, InterruptedException {
+        HttpResponse<String> held = post("/api/holds", "checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room");
+        String token = (String) Json.object(held.body()).get("holdId");
+        String id = token.substring(0, token.indexOf('.'));
+
+        // Counting ids up, or guessing the secret, finds nothing to take over
+        String forged = id + "." + "0".repeat(32);
+        assertEquals(410, post("/api/holds/confirm", "holdId=" + forged + "&name=Thief&guests=1").statusCode());
+        assertEquals(Boolean.FALSE, Json.object(post("/api/holds/release", "holdId=" + forged).body()).get("success"));
+        for (String bad : new String[] { "", "holdId=", "holdId=" + id, "holdId=abc", "holdId=-1.x", "holdId=99999999999.x" }) {
+            HttpResponse<String> confirm = post("/api/holds/confirm", bad + "&name=Thief&guests=1");
+            assertEquals(400, confirm.statusCode(), bad);
+            assertEquals(Boolean.FALSE, Json.object(confirm.body()).get("success"));
+            assertEquals(400, post("/api/holds/release", bad).statusCode(), bad);
+        }
+
+        HttpResponse<String> confirmed = post("/api/holds/confirm", "holdId=" + token + "&name=Guest&guests=1");
+        assertEquals(200, confirmed.statusCode());
+        assertEquals("Guest", Json.object(confirmed.body()).get("name"));
+        assertEquals(410, post("/api/holds/confirm", "holdId=" + token + "&name=Guest&guests=1").statusCode());
+    }
+
+    @Test
+    void badListingAndBookingIdsAreBadRequests() throws IOException, InterruptedException {
+        for (String query : new String[] { "limit=abc", "limit=-5", "cursor=x", "roomNumber=two", "from=2030-02-30", "to=soon" }) {
+            HttpResponse<String> listing = get("/api/bookings?" + query);
+            assertEquals(400, listing.statusCode(), query);
+            assertEquals(Boolean.FALSE, Json.object(listing.body()).get("success"));
+            assertEquals(400, get("/api/bookings/export?" + query).statusCode(), query);
+        }
+        assertEquals(400, post("/api/bookings/delete", "bookingId=abc").statusCode());
+        assertEquals(400, post("/api/bookings/delete", "name=x").statusCode());
+        assertEquals(400, post("/api/bookings/update", "bookingId=1x&name=x").statusCode());
+        assertEquals(400, post("/api/bookings/update", "bookingId=1000&roomNumber=one&name=x").statusCode());
+        assertEquals(404, get("/api/bookings/abc").statusCode());
+
+        assertEquals(200, post("/api/book", "name=Guest&guests=1&checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room").statusCode());
+        Map<String, Object> page = Json.object(get("/api/bookings?limit=1&roomType=Suite+Room").body());
+        assertEquals(1, ((List<?>) page.get("bookings")).size());
+        assertEquals(null, page.get("nextCursor"));
+    }
+
+    @Test
+    void requestsPastTheRateLimitAreTooManyRequests() throws IOException, InterruptedException {
+        // One request every two seconds with a burst of three, on /api/rooms only
+        server.stop(0);
+        server = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            Map.of("rate-limits", "/api/rooms=0.5/3"), node, null);
+        server.start();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, get("/api/rooms").statusCode());
+        }
+        HttpResponse<String> limited = get("/api/rooms");
+        assertEquals(429, limited.statusCode());
+        assertEquals("2", limited.headers().firstValue("Retry-After").orElse(null));
+        assertEquals(Boolean.FALSE, Json.object(limited.body()).get("success"));
+        // Other contexts have no limit here
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, get("/api/bookings").statusCode());
+        }
+        assertTrue(get("/api/metrics").body().contains("hotel_rate_limited_total{path=\"/api/rooms\"} 1\n"));
+    }
+
+    @Test
+    void roomsAreRevalidatedByEtag() throws IOException, InterruptedException {
+        HttpResponse<String> rooms = get("/api/rooms");
+        assertEquals(200, rooms.statusCode());
+        String etag = rooms.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> again = client.send(HttpRequest.newBuilder(URI.create(node.url + "/api/rooms"))
+            .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, again.statusCode());
+    }
+
+    @Test
+    void namesWithQuotesAndBackslashesStayValidJson() throws IOException, InterruptedException {
+        String name = "Dwayne \"The Rock\" O'Neil \\ C:\\temp\t\u0001";
+        HttpResponse<String> booked = post("/api/book", "name=" + encode(name)
+            + "&guests=2&checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room");
+        assertEquals(200, booked.statusCode());
+        assertEquals(name, Json.object(booked.body()).get("name"));
+
+        List<Object> all = Json.array(get("/api/bookings").body());
+        assertEquals(name, ((Map<?, ?>) all.get(0)).get("name"));
+        Map<String, Object> page = Json.object(get("/api/bookings?name=" + encode("dwayne \"")).body());
+        assertEquals(name, ((Map<?, ?>) ((List<?>) page.get("bookings")).get(0)).get("name"));
+        int id = ((Long) Json.object(booked.body()).get("bookingId")).intValue();
+        assertEquals(name, Json.object(get("/api/bookings/" + id).body()).get("name"));
+
+        // Error messages that echo what was sent
+        String date = "2030\"\\01";
+        for (HttpResponse<String> error : List.of(
+                post("/api/book", "name=x&guests=1&checkin=" + encode(date) + "&checkout=2030-01-03&roomType=Suite+Room"),
+                post("/api/book/batch", "name=x&guests=1&checkin=" + encode(date) + "&checkout=2030-01-03&roomType=Suite+Room"),
+                post("/api/holds", "checkin=" + encode(date) + "&checkout=2030-01-03&roomType=Suite+Room"))) {
+            assertEquals(400, error.statusCode(), error.body());
+            Map<String, Object> message = Json.object(error.body());
+            assertEquals(Boolean.FALSE, message.get("success"));
+            assertTrue(((String) message.get("message")).contains(date), error.body());
+        }
+    }
+
+    static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    HttpResponse<String> post(String path, String form) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form))
+            .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,97 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingRequest;
+import com.hotelbooking.HotelBookingSystem.Hold;
+import com.hotelbooking.HotelBookingSystem.RoomInfo;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BookingEngineTest {
+    private static final int DAY = (int) LocalDate.of(2030, 1, 1).toEpochDay();
+
+    private final BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+
+    @Test
+    void staysUpToMaxNightsAreBooked() {
+        assertNotNull(engine.book("Long Stay", DAY, DAY + BookingEngine.MAX_NIGHTS, 1, "Suite Room"));
+        assertNotNull(engine.hold(DAY, DAY + BookingEngine.MAX_NIGHTS, "Suite Room"));
+    }
+
+    @Test
+    void longerStaysAreRejected() {
+        int tooLong = DAY + BookingEngine.MAX_NIGHTS + 1;
+        assertThrows(IllegalArgumentException.class, () -> engine.book("Guest", DAY, tooLong, 1, "Suite Room"));
+        assertThrows(IllegalArgumentException.class,
+            () -> engine.book("Guest", "1900-01-01", "9999-12-31", "1", "Suite Room"));
+        assertThrows(IllegalArgumentException.class, () -> engine.hold(DAY, tooLong, "Suite Room"));
+        assertThrows(IllegalArgumentException.class, () -> BookingRequest.fromParams(Map.of(
+            "checkin", "2030-01-01", "checkout", "2031-01-02", "roomType", "Suite Room")));
+
+        int id = engine.book("Guest", DAY, DAY + 2, 1, "Suite Room").id;
+        assertThrows(IllegalArgumentException.class,
+            () -> engine.update(id, "Guest", "2030-01-01", "2031-01-02", "1", "Suite Room", -1));
+        assertEquals(1, engine.size());
+        assertEquals(DAY + 2, engine.find(id).checkOutDay);
+    }
+
+    @Test
+    void groupWithLongStayBooksNothing() {
+        BookingRequest shortStay = BookingRequest.fromParams(Map.of(
+            "checkin", "2030-01-01", "checkout", "2030-01-03", "roomType", "Suite Room"));
+        BookingRequest longStay = BookingRequest.fromParams(Map.of(
+            "checkin", "2030-01-01", "checkout", "2030-01-03", "roomType", "Suite Room"));
+        longStay.checkOutDay = longStay.checkInDay + BookingEngine.MAX_NIGHTS + 1;
+        assertThrows(IllegalArgumentException.class, () -> engine.bookAll(List.of(shortStay, longStay)));
+        assertEquals(0, engine.size());
+    }
+
+    @Test
+    void clientHoldsAreCappedUntilOneEnds() {
+        engine.maxHoldsPerClient = 2;
+        String client = "203.0.113.7";
+        Hold first = engine.hold(DAY, DAY + 2, "Suite Room", client);
+        Hold second = engine.hold(DAY, DAY + 2, "Suite Room", client);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertThrows(IllegalStateException.class, () -> engine.hold(DAY, DAY + 2, "Suite Room", client));
+        assertNotNull(engine.hold(DAY, DAY + 2, "Suite Room", "198.51.100.1"));
+        assertEquals(3, engine.holdCount());
+
+        assertTrue(engine.release(first.id));
+        Hold third = engine.hold(DAY, DAY + 2, "Suite Room", client);
+        assertNotNull(third);
+        assertNotNull(engine.confirm(second.id, "Guest", 1));
+        assertNotNull(engine.hold(DAY + 10, DAY + 12, "Suite Room", client));
+        assertThrows(IllegalStateException.class, () -> engine.hold(DAY + 10, DAY + 12, "Suite Room", client));
+    }
+
+    @Test
+    void roomsFreeForStayCountsOnlyRoomsFreeEveryNight() {
+        BookingEngine twin = new BookingEngine(Map.of("Twin Room", new RoomInfo(100, 2)));
+        Booking first = twin.book("First", DAY, DAY + 1, 1, "Twin Room");
+        Booking second = twin.book("Second", DAY + 1, DAY + 2, 1, "Twin Room");
+        int otherRoom = 3 - first.roomNumber;
+        second = twin.update(second.id, "Second", "2030-01-02", "2030-01-03", "1", "Twin Room", otherRoom);
+        assertNotEquals(first.roomNumber, second.roomNumber);
+
+        // Each night has a free room, but no room is free for both
+        assertEquals(1, twin.availability.freeRooms("Twin Room", DAY, DAY + 2));
+        assertEquals(0, twin.roomsFreeForStay("Twin Room", DAY, DAY + 2));
+        assertNull(twin.book("Third", DAY, DAY + 2, 1, "Twin Room"));
+        assertEquals(1, twin.roomsFreeForStay("Twin Room", DAY, DAY + 1));
+        assertEquals(2, twin.roomsFreeForStay("Twin Room", DAY + 2, DAY + 5));
+        assertEquals(-1, twin.roomsFreeForStay("Suite Room", DAY, DAY + 1));
+    }
+}
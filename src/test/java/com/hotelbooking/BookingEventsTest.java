@@ -0,0 +1,166 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.DEFAULT_PROPERTY;
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.createServer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.hotelbooking.HotelBookingSystem.Node;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * /api/events streams read the way a browser's EventSource reads them.
+ */
+class BookingEventsTest {
+    @TempDir
+    Path dataDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Node node;
+    private HttpServer server;
+
+    @BeforeEach
+    void startNode() throws IOException {
+        PropertyDirectory directory = new PropertyDirectory(dataDir.toFile(), 100000);
+        directory.add(DEFAULT_PROPERTY, ROOM_INVENTORY);
+        node = new Node(directory);
+        server = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            Map.of("rate-limits", "off"), node, null);
+        node.open(DEFAULT_PROPERTY);
+        server.start();
+    }
+
+    @AfterEach
+    void stopNode() {
+        server.stop(0);
+        node.close();
+    }
+
+    @Test
+    void everyStreamSeesBookingsAndTheirRooms() throws Exception {
+        EventStream first = open();
+        EventStream second = open();
+
+        Map<String, Object> booked = Json.object(post("/api/book",
+            "name=Guest&guests=2&checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room").body());
+        long id = (Long) booked.get("bookingId");
+        for (EventStream events : List.of(first, second)) {
+            assertEquals(booked, events.next("booking"));
+            Map<String, Object> slot = events.next("slot");
+            assertEquals("Suite Room", slot.get("roomType"));
+            assertEquals(booked.get("roomNumber"), slot.get("roomNumber"));
+            assertEquals(List.of(Map.of("from", "2030-01-01", "to", "2030-01-03", "bookingId", id, "guestName", "Guest")),
+                slot.get("runs"));
+        }
+
+        post("/api/bookings/delete", "bookingId=" + id);
+        for (EventStream events : List.of(first, second)) {
+            assertEquals(Map.of("bookingId", id), events.next("deleted"));
+            assertEquals(List.of(Map.of("from", "2030-01-01", "to", "2030-01-03", "bookingId", 0L)),
+                events.next("slot").get("runs"));
+        }
+    }
+
+    @Test
+    void holdsShowInTheirRoomsSlots() throws Exception {
+        EventStream events = open();
+        String token = (String) Json.object(post("/api/holds",
+            "checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room").body()).get("holdId");
+        long holdId = -Long.parseLong(token.substring(0, token.indexOf('.')));
+        assertEquals(List.of(Map.of("from", "2030-01-01", "to", "2030-01-03", "bookingId", holdId, "guestName", "On hold")),
+            events.next("slot").get("runs"));
+
+        post("/api/holds/release", "holdId=" + token);
+        assertEquals(List.of(Map.of("from", "2030-01-01", "to", "2030-01-03", "bookingId", 0L)),
+            events.next("slot").get("runs"));
+    }
+
+    @Test
+    void closingThePropertyEndsTheStream() throws Exception {
+        EventStream events = open();
+        node.close();
+        events.awaitEnd();
+    }
+
+    private EventStream open() throws IOException, InterruptedException {
+        HttpResponse<Stream<String>> response = client.send(HttpRequest.newBuilder(URI.create(node.url + "/api/events")).build(),
+            HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        assertEquals("text/event-stream; charset=utf-8", response.headers().firstValue("Content-Type").orElse(null));
+        return new EventStream(response.body());
+    }
+
+    HttpResponse<String> post(String path, String form) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form))
+            .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Events parsed off one stream by a reader thread; the stream's end is an event named "end".
+     */
+    static final class EventStream {
+        private final BlockingQueue<String[]> events = new LinkedBlockingQueue<>();
+
+        EventStream(Stream<String> lines) {
+            Thread reader = new Thread(() -> {
+                String event = null;
+                Iterator<String> it = lines.iterator();
+                try {
+                    while (it.hasNext()) {
+                        String line = it.next();
+                        if (line.startsWith("event: ")) {
+                            event = line.substring(7);
+                        } else if (line.startsWith("data: ") && event != null) {
+                            events.add(new String[] { event, line.substring(6) });
+                            event = null;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // Connection dropped
+                }
+                events.add(new String[] { "end", "{}" });
+            });
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * The next event named name, skipping others; fails after five seconds.
+         */
+        Map<String, Object> next(String name) throws InterruptedException {
+            while (true) {
+                String[] event = events.poll(5, TimeUnit.SECONDS);
+                assertNotNull(event, "No " + name + " event");
+                if (event[0].equals(name)) return Json.object(event[1]);
+                if (event[0].equals("end")) throw new AssertionError("Stream ended before a " + name + " event");
+            }
+        }
+
+        void awaitEnd() throws InterruptedException {
+            next("end");
+        }
+    }
+}
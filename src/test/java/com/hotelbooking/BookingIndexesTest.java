@@ -0,0 +1,123 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingQuery;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Listing pages from BookingIndexes, checked against a plain filter over every booking.
+ */
+class BookingIndexesTest {
+    private static final String[] TYPES = { "Single Room", "Double Room", "Suite Room" };
+
+    private final BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+
+    @BeforeEach
+    void book() {
+        String[] names = { "Ada", "Adam", "Bea", "Adele", "Carl" };
+        for (int i = 0; i < 40; i++) {
+            LocalDate checkIn = LocalDate.of(2030, 1, 1).plusDays(i % 20);
+            assertNotNull(engine.book(names[i % names.length] + " " + i, checkIn.toString(),
+                checkIn.plusDays(1 + i % 3).toString(), "1", TYPES[i % TYPES.length]));
+        }
+    }
+
+    @Test
+    void pagesFollowTheCursorThroughEveryBooking() {
+        List<Integer> all = expected(Map.of());
+        assertEquals(40, all.size());
+        assertEquals(all, pages(Map.of(), 7));
+        assertEquals(all, pages(Map.of(), 500));
+        assertEquals(all.subList(10, 40), pages(Map.of("cursor", String.valueOf(all.get(9))), 7));
+    }
+
+    @Test
+    void filtersMatchAPlainScan() {
+        List<Map<String, String>> queries = List.of(
+            Map.of("roomType", "Double Room"),
+            Map.of("roomType", "Double Room", "roomNumber", "2"),
+            Map.of("roomNumber", "1"),
+            Map.of("roomType", "Penthouse"),
+            Map.of("from", "2030-01-05", "to", "2030-01-08"),
+            Map.of("from", "2030-01-05", "to", "2030-01-05", "roomType", "Suite Room"),
+            Map.of("from", "2030-01-05", "to", "2030-01-08", "roomType", "Single Room", "roomNumber", "1"),
+            Map.of("to", "2030-01-03"),
+            Map.of("from", "2030-01-08", "to", "2030-01-05"),
+            Map.of("name", "ad"),
+            Map.of("name", "ade"),
+            Map.of("name", "adam", "roomType", "Double Room"));
+        for (Map<String, String> query : queries) {
+            assertEquals(expected(query), pages(query, 3), query.toString());
+        }
+    }
+
+    @Test
+    void roomTypeIndexFollowsUpdatesAndDeletes() {
+        Map<String, String> suites = Map.of("roomType", "Suite Room");
+        int moved = expected(Map.of("roomType", "Double Room")).get(0);
+        Booking booking = engine.find(moved);
+        assertNotNull(engine.update(moved, booking.name, "2031-06-01", "2031-06-02", "1", "Suite Room", -1));
+        engine.delete(expected(suites).get(0));
+        assertEquals(expected(suites), pages(suites, 4));
+        assertEquals(expected(Map.of("roomType", "Double Room")), pages(Map.of("roomType", "Double Room"), 4));
+    }
+
+    @Test
+    void heldRoomsAreNotListed() {
+        engine.hold((int) LocalDate.of(2031, 3, 1).toEpochDay(), (int) LocalDate.of(2031, 3, 4).toEpochDay(), "Suite Room");
+        List<Integer> ids = pages(Map.of("from", "2031-03-01", "to", "2031-03-03"), 5);
+        assertEquals(List.of(), ids);
+        for (int id : pages(Map.of("from", "2030-01-01", "to", "2031-12-31", "roomType", "Suite Room"), 5)) {
+            assertFalse(id <= 0, "id " + id);
+        }
+    }
+
+    @Test
+    void badParametersAreRejected() {
+        for (Map<String, String> params : List.of(Map.of("limit", "abc"), Map.of("limit", "0"), Map.of("cursor", "x"),
+                Map.of("roomNumber", "two"), Map.of("from", "2030-13-01"), Map.of("to", "soon"))) {
+            assertThrows(IllegalArgumentException.class, () -> BookingQuery.fromParams(params), params.toString());
+        }
+        assertEquals(500, BookingQuery.fromParams(Map.of("limit", "100000")).limit);
+    }
+
+    /**
+     * Every id the listing returns for params, following nextCursor a page of limit at a time.
+     */
+    private List<Integer> pages(Map<String, String> params, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        Map<String, String> next = new HashMap<>(params);
+        while (true) {
+            BookingQuery query = BookingQuery.fromParams(next);
+            List<Booking> page = engine.indexes.page(query, limit + 1);
+            for (Booking booking : page.subList(0, Math.min(limit, page.size()))) {
+                ids.add(booking.id);
+            }
+            if (page.size() <= limit) return ids;
+            next.put("cursor", String.valueOf(ids.get(ids.size() - 1)));
+        }
+    }
+
+    private List<Integer> expected(Map<String, String> params) {
+        BookingQuery query = BookingQuery.fromParams(params);
+        List<Integer> ids = new ArrayList<>();
+        for (Booking booking : engine.bookings()) {
+            if (query.matches(booking)) ids.add(booking.id);
+        }
+        ids.sort(null);
+        return ids;
+    }
+}
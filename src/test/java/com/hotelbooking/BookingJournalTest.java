@@ -0,0 +1,149 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingJournal;
+import com.hotelbooking.HotelBookingSystem.BookingRequest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recovery from snapshots and journal segments, including segments a crash left with a
+ * torn or zero-filled tail.
+ */
+class BookingJournalTest {
+    @TempDir
+    Path dir;
+
+    private BookingEngine engine;
+    private BookingJournal journal;
+
+    @Test
+    void replaysSnapshotThenLaterSegments() throws IOException {
+        open();
+        Booking first = book("First", "2030-01-01");
+        book("Second", "2030-01-02");
+        journal.snapshot();
+        Booking third = book("Third", "2030-01-03");
+        BookingRequest group = BookingRequest.fromParams(Map.of(
+            "name", "Group", "checkin", "2030-02-01", "checkout", "2030-02-03", "roomType", "Double Room"));
+        assertNotNull(engine.bookAll(List.of(group, group)).bookings);
+        engine.update(third.id, "Third, later", "2030-01-04", "2030-01-06", "3", "Suite Room", -1);
+        engine.delete(first.id);
+        assertTrue(engine.awaitDurable());
+        Map<Integer, String> before = contents();
+        journal.close();
+
+        open();
+        assertEquals(before, contents());
+        assertEquals(4, engine.size());
+        journal.close();
+    }
+
+    @Test
+    void tornTailIsCutAtTheLastGoodRecord() throws IOException {
+        // Claims 50 payload bytes but only 2 made it to disk
+        assertTailIsCut(new byte[] { 0, 0, 0, 50, 1, 2, 3, 4, 9, 9 });
+    }
+
+    @Test
+    void zeroFilledTailIsCut() throws IOException {
+        assertTailIsCut(new byte[4096]);
+    }
+
+    @Test
+    void garbageLengthIsCut() throws IOException {
+        assertTailIsCut(new byte[] { -1, -1, -1, -1, 0, 0, 0, 0, 7 });
+        assertTailIsCut(new byte[] { 0x7F, -1, -1, -1, 0, 0, 0, 0, 7 });
+    }
+
+    @Test
+    void recordThatDoesNotDecodeIsCut() throws IOException {
+        // Right length and CRC, unknown record type
+        byte[] payload = { 42, 0, 0, 0, 1 };
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int check = (int) crc.getValue();
+        byte[] record = { 0, 0, 0, 5, (byte) (check >>> 24), (byte) (check >>> 16), (byte) (check >>> 8), (byte) check,
+            42, 0, 0, 0, 1 };
+        assertTailIsCut(record);
+    }
+
+    @Test
+    void writesAfterCloseFailInsteadOfHanging() throws IOException {
+        open();
+        journal.close();
+        book("Late", "2030-01-01");
+        assertFalse(engine.awaitDurable());
+    }
+
+    private void assertTailIsCut(byte[] tail) throws IOException {
+        open();
+        book("Kept " + engine.size(), "2030-03-0" + (1 + engine.size()));
+        assertTrue(engine.awaitDurable());
+        Map<Integer, String> before = contents();
+        journal.close();
+
+        File segment = lastSegment();
+        long goodLength = segment.length();
+        Files.write(segment.toPath(), tail, StandardOpenOption.APPEND);
+
+        open();
+        assertEquals(before, contents());
+        assertEquals(goodLength, segment.length());
+        // Appends land right after the last good record and survive another restart
+        book("After", "2030-04-01");
+        assertTrue(engine.awaitDurable());
+        before = contents();
+        journal.close();
+        open();
+        assertEquals(before, contents());
+        journal.close();
+    }
+
+    private void open() throws IOException {
+        engine = new BookingEngine(ROOM_INVENTORY);
+        journal = BookingJournal.open(dir.toFile(), 0, engine);
+    }
+
+    private Booking book(String name, String checkIn) {
+        String checkOut = LocalDate.parse(checkIn).plusDays(2).toString();
+        Booking booking = engine.book(name, checkIn, checkOut, "2", "Double Room");
+        assertNotNull(booking);
+        return booking;
+    }
+
+    private Map<Integer, String> contents() {
+        Map<Integer, String> contents = new TreeMap<>();
+        for (Booking booking : engine.bookings()) {
+            contents.put(booking.id, booking + " " + booking.checkIn() + ".." + booking.checkOut() + " x" + booking.guests);
+        }
+        return contents;
+    }
+
+    private File lastSegment() {
+        List<File> segments = new ArrayList<>();
+        for (File file : dir.toFile().listFiles()) {
+            if (file.getName().startsWith("journal-")) segments.add(file);
+        }
+        segments.sort(null);
+        return segments.get(segments.size() - 1);
+    }
+}
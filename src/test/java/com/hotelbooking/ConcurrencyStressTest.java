@@ -0,0 +1,204 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.Hold;
+import com.hotelbooking.HotelBookingSystem.RoomInfo;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hammers a private BookingEngine from many threads with mixed book/update/delete/hold
+ * traffic and concurrent repacks, then checks that no room was ever assigned to two
+ * overlapping stays, that no booking id was issued twice and that every hold expires.
+ */
+class ConcurrencyStressTest {
+
+    @Test
+    void concurrentTrafficKeepsEveryRoomSingleBooked() throws InterruptedException {
+        BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+        // Short holds, so some expire on the wheel while the workers run
+        engine.holdMillis = 300;
+        String[] roomTypes = ROOM_INVENTORY.keySet().toArray(new String[0]);
+        LocalDate base = LocalDate.of(2030, 1, 1);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int opsPerThread = 20000;
+
+        AtomicInteger maxId = new AtomicInteger(1000);
+        AtomicInteger maxHoldId = new AtomicInteger(1);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < opsPerThread; i++) {
+                    String roomType = roomTypes[random.nextInt(roomTypes.length)];
+                    LocalDate checkIn = base.plusDays(random.nextInt(60));
+                    LocalDate checkOut = checkIn.plusDays(1 + random.nextInt(5));
+                    int op = random.nextInt(100);
+
+                    if (op < 60) {
+                        Booking booking = engine.book("Guest", checkIn.toString(), checkOut.toString(), "1", roomType);
+                        if (booking != null) maxId.accumulateAndGet(booking.id, Math::max);
+                    } else if (op < 72) {
+                        engine.delete(1000 + random.nextInt(maxId.get() - 999));
+                    } else if (op < 85) {
+                        engine.update(1000 + random.nextInt(maxId.get() - 999), "Moved", checkIn.toString(),
+                            checkOut.toString(), "2", roomType, -1);
+                    } else if (op < 93) {
+                        Hold hold = engine.hold((int) checkIn.toEpochDay(), (int) checkOut.toEpochDay(), roomType);
+                        if (hold != null) maxHoldId.accumulateAndGet(hold.id, Math::max);
+                    } else if (op < 97) {
+                        Booking booking = engine.confirm(1 + random.nextInt(maxHoldId.get()), "Held", 1);
+                        if (booking != null) maxId.accumulateAndGet(booking.id, Math::max);
+                    } else {
+                        engine.release(1 + random.nextInt(maxHoldId.get()));
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        // Repacks run alongside, moving unstarted stays under the workers' feet
+        AtomicBoolean done = new AtomicBoolean();
+        Thread repacker = new Thread(() -> {
+            int today = (int) base.plusDays(20).toEpochDay();
+            while (!done.get()) {
+                for (String roomType : roomTypes) {
+                    engine.repack(roomType, today);
+                }
+            }
+        });
+        repacker.start();
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        done.set(true);
+        repacker.join();
+
+        List<String> failures = verify(engine);
+        // Every hold left must lapse on the wheel and give its nights back
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(engine.holdMillis + 500));
+        if (engine.holdCount() != 0) {
+            failures.add(engine.holdCount() + " holds outlived their expiry");
+        }
+        failures.addAll(verify(engine));
+        assertNoFailures(failures);
+    }
+
+    static void assertNoFailures(List<String> failures) {
+        assertTrue(failures.isEmpty(), () -> failures.size() + " failures, first: "
+            + String.join("\n", failures.subList(0, Math.min(20, failures.size()))));
+    }
+
+    /**
+     * Checks the store, the occupancy grid and the availability index against each other.
+     */
+    static List<String> verify(BookingEngine engine) {
+        List<String> failures = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>();
+        Map<String, List<Booking>> byRoom = new HashMap<>();
+
+        for (Booking booking : engine.bookings()) {
+            if (!ids.add(booking.id)) {
+                failures.add("Duplicate booking id #" + booking.id);
+            }
+            int slot = engine.grid.slot(booking.roomTypeName(), booking.roomNumber);
+            for (int day = booking.checkInDay; day < booking.checkOutDay; day++) {
+                if (engine.grid.bookingAt(day, slot) != booking.id) {
+                    failures.add("Occupancy grid out of sync for #" + booking.id + " on day " + day);
+                    break;
+                }
+            }
+            byRoom.computeIfAbsent(booking.roomTypeName() + " #" + booking.roomNumber, k -> new ArrayList<>()).add(booking);
+        }
+
+        for (Map.Entry<String, List<Booking>> entry : byRoom.entrySet()) {
+            List<Booking> stays = entry.getValue();
+            stays.sort(Comparator.comparingInt(b -> b.checkInDay));
+            for (int i = 1; i < stays.size(); i++) {
+                Booking previous = stays.get(i - 1);
+                Booking current = stays.get(i);
+                if (current.checkInDay < previous.checkOutDay) {
+                    failures.add(entry.getKey() + " double-booked: #" + previous.id + " and #" + current.id);
+                }
+            }
+        }
+
+        // Every occupied grid cell must belong to a live booking of that room and night
+        Set<Integer> inGrid = new HashSet<>();
+        for (int day = engine.grid.firstDay(); day <= engine.grid.lastDay(); day++) {
+            for (int slot = 0; slot < engine.grid.slotCount(); slot++) {
+                int id = engine.grid.bookingAt(day, slot);
+                if (id == 0) continue;
+                if (id < 0) {
+                    Hold hold = engine.findHold(-id);
+                    if (hold == null || engine.grid.slot(hold.roomType, hold.roomNumber) != slot
+                            || day < hold.checkInDay || day >= hold.checkOutDay) {
+                        failures.add("Stale grid cell for hold #" + -id + " on day " + day);
+                    }
+                    continue;
+                }
+                Booking booking = engine.find(id);
+                if (booking == null || engine.grid.slot(booking.roomTypeName(), booking.roomNumber) != slot
+                        || day < booking.checkInDay || day >= booking.checkOutDay) {
+                    failures.add("Stale grid cell for #" + id + " on day " + day);
+                } else {
+                    inGrid.add(id);
+                }
+            }
+        }
+        // The availability index must agree with nightly free rooms counted off the grid,
+        // night by night and over every week-long stay
+        for (Map.Entry<String, RoomInfo> entry : engine.inventory.entrySet()) {
+            String roomType = entry.getKey();
+            int slotBase = engine.grid.slotBase(roomType);
+            int[] free = new int[Math.max(0, engine.grid.lastDay() - engine.grid.firstDay() + 1)];
+            for (int i = 0; i < free.length; i++) {
+                for (int room = 0; room < entry.getValue().totalRooms; room++) {
+                    if (engine.grid.bookingAt(engine.grid.firstDay() + i, slotBase + room) == 0) free[i]++;
+                }
+            }
+            for (int i = 0; i < free.length; i++) {
+                int expected = Arrays.stream(free, i, Math.min(free.length, i + 7)).min().getAsInt();
+                int day = engine.grid.firstDay() + i;
+                if (engine.availability.freeRooms(roomType, day, day + 1) != free[i]
+                        || engine.availability.freeRooms(roomType, day, Math.min(day + 7, engine.grid.lastDay() + 1)) != expected) {
+                    failures.add("Availability index out of sync for " + roomType + " on day " + day);
+                }
+            }
+        }
+        if (ids.size() != engine.size()) {
+            failures.add("Listing holds " + ids.size() + " bookings but the store counts " + engine.size());
+        }
+        if (inGrid.size() != engine.size()) {
+            failures.add("Occupancy grid holds " + inGrid.size() + " stays but " + engine.size() + " bookings exist");
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,125 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.DEFAULT_PROPERTY;
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.createServer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Node;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * /api/metrics as Prometheus scrapes it. The registry is shared by every server in the
+ * JVM, so checks compare two scrapes rather than absolute values.
+ */
+class MetricsTest {
+    @TempDir
+    Path dataDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Node node;
+    private HttpServer server;
+
+    @BeforeEach
+    void startNode() throws IOException {
+        PropertyDirectory directory = new PropertyDirectory(dataDir.toFile(), 100000);
+        directory.add(DEFAULT_PROPERTY, ROOM_INVENTORY);
+        node = new Node(directory);
+        server = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            Map.of("rate-limits", "off"), node, null);
+        node.open(DEFAULT_PROPERTY);
+        server.start();
+    }
+
+    @AfterEach
+    void stopNode() {
+        server.stop(0);
+        node.close();
+    }
+
+    @Test
+    void requestsAndBookingsAreCounted() throws IOException, InterruptedException {
+        Map<String, Double> before = scrape();
+        String stay = "guests=1&checkin=2030-01-01&checkout=2030-01-03&roomType=Suite+Room";
+        assertEquals(200, post("/api/book", "name=First&" + stay).statusCode());
+        assertEquals(200, post("/api/book", "name=Second&" + stay).statusCode());
+        assertEquals(404, get("/api/bookings/12345").statusCode());
+        Map<String, Double> after = scrape();
+
+        assertEquals(2, delta(before, after, "hotel_bookings_total{event=\"created\"}"));
+        assertEquals(0, delta(before, after, "hotel_bookings_total{event=\"deleted\"}"));
+        assertEquals(2, delta(before, after, "hotel_http_requests_total{path=\"/api/book\",status=\"2xx\"}"));
+        assertEquals(2, delta(before, after, "hotel_http_request_duration_seconds_count{path=\"/api/book\"}"));
+        assertTrue(delta(before, after, "hotel_http_request_duration_seconds_sum{path=\"/api/book\"}") > 0);
+        assertTrue(delta(before, after, "hotel_http_response_bytes_total{path=\"/api/book\"}") > 0);
+        assertEquals(1, delta(before, after, "hotel_http_requests_total{path=\"/api/bookings\",status=\"4xx\"}"));
+        // The scrape that is rendering counts itself as in flight
+        assertEquals(1, after.get("hotel_http_requests_in_flight{path=\"/api/metrics\"}"));
+        double median = after.get("hotel_http_request_duration_seconds{path=\"/api/book\",quantile=\"0.5\"}");
+        assertTrue(median > 0 && median <= after.get("hotel_http_request_duration_seconds{path=\"/api/book\",quantile=\"0.999\"}"));
+    }
+
+    /**
+     * Parses one scrape, checking every sample belongs to a family announced by HELP and
+     * TYPE lines, that no family is announced twice and that no sample repeats.
+     */
+    private Map<String, Double> scrape() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/api/metrics");
+        assertEquals(200, response.statusCode());
+        assertEquals("text/plain; version=0.0.4; charset=utf-8", response.headers().firstValue("Content-Type").orElse(null));
+
+        Map<String, Double> samples = new HashMap<>();
+        Set<String> families = new HashSet<>();
+        String family = null;
+        for (String line : response.body().split("\n")) {
+            if (line.startsWith("# HELP ")) {
+                family = line.substring(7, line.indexOf(' ', 7));
+                assertTrue(families.add(family), "Family announced twice: " + family);
+                continue;
+            }
+            if (line.startsWith("# TYPE ")) {
+                assertTrue(line.matches("# TYPE " + family + " (counter|gauge|summary)"), line);
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            String name = line.substring(0, space);
+            assertTrue(family != null && name.startsWith(family) && name.matches("[a-z_]+(\\{.*\\})?"), line);
+            assertEquals(null, samples.put(name, Double.parseDouble(line.substring(space + 1))), "Repeated: " + line);
+        }
+        return samples;
+    }
+
+    private static double delta(Map<String, Double> before, Map<String, Double> after, String sample) {
+        assertTrue(after.containsKey(sample), sample);
+        return after.get(sample) - before.getOrDefault(sample, 0.0);
+    }
+
+    HttpResponse<String> post(String path, String form) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form))
+            .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,198 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.createServer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Node;
+import com.hotelbooking.HotelBookingSystem.Property;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Serves three properties from two in-process nodes on loopback ports and checks over
+ * HTTP that bookings stay within their property, that requests sent to the wrong node are
+ * redirected, that /api/search returns every property, and that a property moved to the
+ * other node while a client keeps booking on it loses none of its bookings and waits for
+ * requests still running on it.
+ */
+class MultiNodeTest {
+    private static final Pattern BOOKING_ID = Pattern.compile("\"bookingId\":(\\d+)");
+    private static final String[] IDS = { "main", "annex", "resort" };
+
+    @TempDir
+    Path dataDir;
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+    private Node[] nodes;
+    private HttpServer[] servers;
+
+    @BeforeEach
+    void startNodes() throws IOException {
+        PropertyDirectory directory = new PropertyDirectory(dataDir.toFile(), 100000);
+        for (String id : IDS) {
+            directory.add(id, ROOM_INVENTORY);
+        }
+        nodes = new Node[] { new Node(directory), new Node(directory) };
+        servers = new HttpServer[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            servers[i] = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                Map.of("rate-limits", "off"), nodes[i], null);
+        }
+        nodes[0].open("main");
+        nodes[1].open("annex");
+        nodes[0].open("resort");
+        for (HttpServer server : servers) {
+            server.start();
+        }
+    }
+
+    @AfterEach
+    void stopNodes() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        for (Node node : nodes) {
+            node.close();
+        }
+    }
+
+    @Test
+    void propertiesStayIsolatedAcrossNodes() throws IOException, InterruptedException {
+        // Everything through node 0; annex requests are redirected to node 1
+        for (String id : IDS) {
+            for (int k = 1; k <= 5; k++) {
+                String result = send("POST", nodes[0].url + "/api/book?property=" + id,
+                    "name=" + id + "-guest&checkin=2031-01-0" + k + "&checkout=2031-01-0" + (k + 1)
+                        + "&guests=1&roomType=Double+Room");
+                assertTrue(result.contains("\"success\":true"), () -> "Booking in " + id + " failed: " + result);
+            }
+        }
+        for (String id : IDS) {
+            for (Node node : nodes) {
+                String page = send("GET", node.url + "/api/bookings?property=" + id + "&limit=100", null);
+                assertEquals(5, count(page, "\"bookingId\""), id + " via " + node.url);
+                assertEquals(5, count(page, "\"" + id + "-guest\""), id + " via " + node.url);
+            }
+        }
+        String search = send("GET", nodes[1].url + "/api/search?limit=100", null);
+        assertEquals(15, count(search, "\"bookingId\""), search);
+        assertFalse(search.contains("\"error\""), search);
+        assertEquals(404, client.send(HttpRequest.newBuilder(URI.create(nodes[0].url + "/api/bookings?property=nowhere")).build(),
+            HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    @Test
+    void moveKeepsEveryBooking() throws IOException, InterruptedException {
+        for (int k = 1; k <= 5; k++) {
+            send("POST", nodes[1].url + "/api/book?property=annex", "name=annex-guest&checkin=2031-01-0" + k
+                + "&checkout=2031-01-0" + (k + 1) + "&guests=1&roomType=Double+Room");
+        }
+
+        // Move annex to node 0 while bookings keep arriving at node 1
+        List<Integer> booked = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread booker = new Thread(() -> {
+            int day = 0;
+            while (!stop.get() && booked.size() < 300) {
+                LocalDate checkIn = LocalDate.of(2032, 1, 1).plusDays(day);
+                try {
+                    String result = send("POST", nodes[1].url + "/api/book?property=annex",
+                        "name=annex-guest&checkin=" + checkIn + "&checkout=" + checkIn.plusDays(1)
+                            + "&guests=1&roomType=Suite+Room");
+                    Matcher id = BOOKING_ID.matcher(result);
+                    if (id.find()) {
+                        booked.add(Integer.parseInt(id.group(1)));
+                        day++;
+                    } else {
+                        Thread.sleep(5);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        booker.start();
+        Thread.sleep(300);
+        nodes[1].move("annex", nodes[0]);
+        Thread.sleep(300);
+        stop.set(true);
+        booker.join();
+
+        assertFalse(booked.isEmpty(), "No bookings went through during the move");
+        for (int id : booked) {
+            String found = send("GET", nodes[1].url + "/api/bookings/" + id + "?property=annex", null);
+            assertTrue(found.contains("\"bookingId\":" + id), () -> "Booking " + id + " lost in the move");
+        }
+        String page = send("GET", nodes[1].url + "/api/bookings?property=annex&limit=500", null);
+        assertEquals(5 + booked.size(), count(page, "\"bookingId\""), "annex bookings after the move");
+    }
+
+    @Test
+    void moveWaitsForRunningRequests() throws InterruptedException {
+        Property annex = nodes[1].acquire("annex");
+        Thread mover = new Thread(() -> {
+            try {
+                nodes[1].move("annex", nodes[0]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        mover.start();
+        mover.join(300);
+        assertTrue(mover.isAlive(), "Journal closed under a running request");
+        assertNull(nodes[1].acquire("annex"));
+
+        annex.release();
+        mover.join(5000);
+        assertFalse(mover.isAlive(), "Move still waiting after the last request");
+        Property moved = nodes[0].acquire("annex");
+        assertNotNull(moved);
+        moved.release();
+    }
+
+    private String send(String method, String url, String form) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        if (form != null) {
+            request.header("Content-Type", "application/x-www-form-urlencoded")
+                .method(method, HttpRequest.BodyPublishers.ofString(form));
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static int count(String text, String needle) {
+        int count = 0;
+        for (int i = text.indexOf(needle); i != -1; i = text.indexOf(needle, i + needle.length())) {
+            count++;
+        }
+        return count;
+    }
+}
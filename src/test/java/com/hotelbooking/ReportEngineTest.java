@@ -0,0 +1,74 @@
+package com.hotelbooking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.JsonWriter;
+import com.hotelbooking.HotelBookingSystem.ReportEngine;
+import com.hotelbooking.HotelBookingSystem.RoomInfo;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ReportEngineTest {
+    private static final int DAY = (int) LocalDate.of(2030, 1, 1).toEpochDay();
+    private static final int PRICE = 10_000_000;
+
+    private final BookingEngine engine = new BookingEngine(Map.of("Penthouse", new RoomInfo(PRICE, 3)));
+    private final ReportEngine reports = new ReportEngine(engine);
+
+    ReportEngineTest() {
+        engine.listeners.add(reports);
+    }
+
+    @Test
+    void revenuePastIntRangeStaysPositive() throws IOException {
+        // Each stay's price just fits an int; the three together do not
+        int nights = Integer.MAX_VALUE / PRICE;
+        Booking[] booked = new Booking[3];
+        for (int i = 0; i < booked.length; i++) {
+            booked[i] = engine.book("Guest " + i, DAY, DAY + nights, 1, "Penthouse");
+            assertNotNull(booked[i]);
+            assertEquals((long) PRICE * nights, booked[i].totalPrice);
+        }
+
+        long[] totals = reports.rollup(DAY, DAY + nights - 1);
+        assertArrayEquals(reports.scan(DAY, DAY + nights - 1), totals);
+        long revenue = 0;
+        for (int i = 1; i < totals.length; i += 2) {
+            assertTrue(totals[i] > 0);
+            revenue += totals[i];
+        }
+        assertEquals(3L * PRICE * nights, revenue);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = JsonWriter.forStream(out);
+        json.beginObject();
+        reports.write(json, totals, DAY, DAY + nights - 1, "month", -1);
+        json.endObject().flush();
+        String report = out.toString(StandardCharsets.UTF_8);
+        assertTrue(report.contains("\"total\":{\"roomNightsAvailable\":" + 3 * nights + ",\"roomNightsSold\":" + 3 * nights
+            + ",\"revenue\":" + revenue + ","), report);
+        assertFalse(report.contains(":-"), report);
+    }
+
+    @Test
+    void totalsPastIntRangeAreRefused() {
+        int nights = Integer.MAX_VALUE / PRICE + 1;
+        assertThrows(IllegalArgumentException.class, () -> engine.book("Guest", DAY, DAY + nights, 1, "Penthouse"));
+        assertThrows(IllegalArgumentException.class, () -> engine.hold(DAY, DAY + nights, "Penthouse"));
+        assertEquals(0, engine.size());
+        for (long figure : reports.rollup(DAY, DAY + nights)) {
+            assertEquals(0, figure);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.hotelbooking.HotelBookingSystem.Booking;
+import com.hotelbooking.HotelBookingSystem.BookingEngine;
+import com.hotelbooking.HotelBookingSystem.BookingListener;
+import com.hotelbooking.HotelBookingSystem.Hold;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.hotelbooking.HotelBookingSystem.RoomAllocator;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Room choice for new stays, and repack gathering free nights into whole rooms.
+ */
+class RoomAllocatorTest {
+    private static final String SUITE = "Suite Room";
+    private static final LocalDate JAN_1 = LocalDate.of(2030, 1, 1);
+
+    private final BookingEngine engine = new BookingEngine(ROOM_INVENTORY);
+
+    @Test
+    void bestFitIsTheDefault(@TempDir Path dir) {
+        assertSame(RoomAllocator.BEST_FIT, engine.allocator);
+        assertSame(RoomAllocator.BEST_FIT, new PropertyDirectory(dir.toFile(), 100000).allocator);
+        assertSame(RoomAllocator.FIRST_FIT, RoomAllocator.named("first-fit"));
+        assertSame(RoomAllocator.BEST_FIT, RoomAllocator.named("best-fit"));
+        assertThrows(IllegalArgumentException.class, () -> RoomAllocator.named("random"));
+    }
+
+    @Test
+    void bestFitFillsTheTightestHole() {
+        // Suite 2 is free only on the 3rd and 4th; suites 1 and 3 are free all month
+        place("Early", 1, 3, 2);
+        place("Late", 5, 11, 2);
+
+        assertEquals(1, choose(RoomAllocator.FIRST_FIT, 3, 5));
+        assertEquals(2, choose(RoomAllocator.BEST_FIT, 3, 5));
+        assertEquals(2, book("Gap", 3, 5).roomNumber);
+        // A stay too long for any hole goes next to another stay, keeping suites 1 and 3 whole
+        assertEquals(2, book("Week", 12, 19).roomNumber);
+    }
+
+    @Test
+    void repackGathersFreeNightsIntoWholeRooms() {
+        // Back-to-back stays spread over every suite leave no room free for the six nights
+        engine.allocator = RoomAllocator.FIRST_FIT;
+        place("First", 1, 3, 1);
+        place("Second", 3, 5, 2);
+        place("Third", 5, 7, 3);
+        assertNull(book("Six nights", 1, 7));
+
+        int today = (int) JAN_1.toEpochDay() - 1;
+        assertEquals(2, engine.repack(SUITE, today));
+        assertEquals(0, engine.repack(SUITE, today));
+        for (Booking booking : engine.bookings()) {
+            assertEquals(1, booking.roomNumber, booking.name);
+        }
+        assertNotNull(book("Six nights", 1, 7));
+        assertNotNull(book("Six more nights", 1, 7));
+    }
+
+    @Test
+    void repackLeavesStaysUnderWay() {
+        place("Staying", 1, 4, 3);
+        place("Arriving", 4, 6, 2);
+        place("Later", 8, 9, 1);
+
+        // On the 2nd suite 3 stays taken until the 4th, the closest fit for both arrivals
+        int today = (int) JAN_1.plusDays(1).toEpochDay();
+        assertEquals(2, engine.repack(SUITE, today));
+        assertEquals(3, roomOf("Staying"));
+        assertEquals(3, roomOf("Arriving"));
+        assertEquals(3, roomOf("Later"));
+    }
+
+    @Test
+    void repackMovesHoldsAndSaysWhere() {
+        engine.allocator = RoomAllocator.FIRST_FIT;
+        place("First", 1, 3, 2);
+        Hold hold = engine.hold((int) JAN_1.plusDays(2).toEpochDay(), (int) JAN_1.plusDays(4).toEpochDay(), SUITE);
+        assertEquals(1, hold.roomNumber);
+
+        List<Integer> rooms = new ArrayList<>();
+        engine.listeners.add(new BookingListener() {
+            @Override
+            public void bookingCreated(Booking booking) {
+            }
+
+            @Override
+            public void bookingUpdated(Booking before, Booking after) {
+            }
+
+            @Override
+            public void bookingDeleted(Booking booking) {
+            }
+
+            @Override
+            public void holdChanged(Booking held) {
+                assertEquals(-hold.id, held.id);
+                rooms.add(held.roomNumber);
+            }
+        });
+        // Suite 2 frees up on the 3rd, right as the hold starts
+        assertEquals(1, engine.repack(SUITE, (int) JAN_1.toEpochDay() - 1));
+        assertEquals(2, engine.findHold(hold.id).roomNumber);
+        assertEquals(List.of(1, 2), rooms);
+    }
+
+    private Booking book(String name, int fromDayOfMonth, int toDayOfMonth) {
+        return engine.book(name, JAN_1.plusDays(fromDayOfMonth - 1).toString(),
+            JAN_1.plusDays(toDayOfMonth - 1).toString(), "1", SUITE);
+    }
+
+    private void place(String name, int fromDayOfMonth, int toDayOfMonth, int roomNumber) {
+        Booking booking = book(name, fromDayOfMonth, toDayOfMonth);
+        assertNotNull(booking, name);
+        assertNotNull(engine.update(booking.id, name, booking.checkIn(), booking.checkOut(), "1", SUITE, roomNumber), name);
+        assertEquals(roomNumber, roomOf(name));
+    }
+
+    private int roomOf(String name) {
+        for (Booking booking : engine.bookings()) {
+            if (booking.name.equals(name)) return booking.roomNumber;
+        }
+        throw new AssertionError(name);
+    }
+
+    private int choose(RoomAllocator allocator, int fromDayOfMonth, int toDayOfMonth) {
+        int checkIn = (int) JAN_1.plusDays(fromDayOfMonth - 1).toEpochDay();
+        int checkOut = (int) JAN_1.plusDays(toDayOfMonth - 1).toEpochDay();
+        return allocator.choose(engine.grid, engine.grid.slotBase(SUITE), 3, checkIn, checkOut,
+            slot -> engine.grid.isFree(slot, checkIn, checkOut));
+    }
+}
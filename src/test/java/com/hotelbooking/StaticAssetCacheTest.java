@@ -0,0 +1,117 @@
+package com.hotelbooking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.StaticAsset;
+import com.hotelbooking.HotelBookingSystem.StaticAssetCache;
+import com.sun.net.httpserver.Headers;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StaticAssetCacheTest {
+    // What StaticFileHandler gives its cache
+    private static final long LIMIT = 32 * 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private final StaticAssetCache cache = new StaticAssetCache(LIMIT, LIMIT);
+
+    @Test
+    void unchangedFilesComeFromTheCache() throws IOException {
+        File file = write("site.css", "body { color: red; }\n".repeat(100), 1_000_000_000_000L);
+        StaticAsset first = cache.get("/site.css", file, "text/css");
+        assertSame(first, cache.get("/site.css", file, "text/css"));
+
+        write("site.css", "body { color: blue; }\n".repeat(100), 1_000_000_060_000L);
+        StaticAsset changed = cache.get("/site.css", file, "text/css");
+        assertNotSame(first, changed);
+        assertNotEquals(first.etag, changed.etag);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), changed.bytes);
+        assertSame(changed, cache.get("/site.css", file, "text/css"));
+    }
+
+    @Test
+    void textAssetsKeepAGzippedCopy() throws IOException {
+        File script = write("app.js", "console.log('hello');\n".repeat(200), 1_000_000_000_000L);
+        StaticAsset asset = cache.get("/app.js", script, "application/javascript");
+        assertNotNull(asset.gzipped);
+        assertTrue(asset.gzipped.length < asset.bytes.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(asset.gzipped))) {
+            assertArrayEquals(asset.bytes, in.readAllBytes());
+        }
+
+        // Images are compressed already, and a gzipped copy of a tiny file only grows
+        assertNull(cache.get("/photo.jpg", write("photo.jpg", "x".repeat(5000), 1_000_000_000_000L), "image/jpeg").gzipped);
+        assertNull(cache.get("/tiny.css", write("tiny.css", "a{}", 1_000_000_000_000L), "text/css").gzipped);
+    }
+
+    @Test
+    void leastRecentlyUsedFilesAreEvictedPastTheLimit() throws IOException {
+        int twelveMegabytes = 12 * 1024 * 1024;
+        File a = write("a.jpg", twelveMegabytes);
+        File b = write("b.jpg", twelveMegabytes);
+        File c = write("c.jpg", twelveMegabytes);
+        StaticAsset cachedA = cache.get("/a.jpg", a, "image/jpeg");
+        StaticAsset cachedB = cache.get("/b.jpg", b, "image/jpeg");
+        assertSame(cachedA, cache.get("/a.jpg", a, "image/jpeg"));
+
+        // 36 MB does not fit in 32: b, used least recently, goes
+        StaticAsset cachedC = cache.get("/c.jpg", c, "image/jpeg");
+        assertSame(cachedA, cache.get("/a.jpg", a, "image/jpeg"));
+        assertSame(cachedC, cache.get("/c.jpg", c, "image/jpeg"));
+        assertNotSame(cachedB, cache.get("/b.jpg", b, "image/jpeg"));
+        // Reloading b pushed out a, now the least recently used
+        assertNotSame(cachedA, cache.get("/a.jpg", a, "image/jpeg"));
+    }
+
+    @Test
+    void validatorsAnswerConditionalRequests() throws IOException {
+        StaticAsset asset = cache.get("/index.html", write("index.html", "<p>hi</p>", 1_000_000_000_000L), "text/html");
+
+        assertTrue(asset.isNotModified(headers("If-None-Match", asset.etag)));
+        assertTrue(asset.isNotModified(headers("If-None-Match", "\"other\", " + asset.etag)));
+        assertTrue(asset.isNotModified(headers("If-None-Match", "*")));
+        assertFalse(asset.isNotModified(headers("If-None-Match", "\"other\"")));
+        assertTrue(asset.isNotModified(headers("If-Modified-Since", asset.lastModifiedHeader)));
+        assertFalse(asset.isNotModified(headers("If-Modified-Since", "Sat, 01 Jan 2000 00:00:00 GMT")));
+        assertFalse(asset.isNotModified(headers("If-Modified-Since", "yesterday")));
+        // An ETag that does not match wins over a date that would
+        Headers both = headers("If-None-Match", "\"other\"");
+        both.add("If-Modified-Since", asset.lastModifiedHeader);
+        assertFalse(asset.isNotModified(both));
+    }
+
+    private File write(String name, String content, long lastModified) throws IOException {
+        File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private File write(String name, int length) throws IOException {
+        File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), new byte[length]);
+        return file;
+    }
+
+    private static Headers headers(String name, String value) {
+        Headers headers = new Headers();
+        headers.add(name, value);
+        return headers;
+    }
+}
@@ -0,0 +1,144 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.HotelBookingSystem.DEFAULT_PROPERTY;
+import static com.hotelbooking.HotelBookingSystem.ROOM_INVENTORY;
+import static com.hotelbooking.HotelBookingSystem.createServer;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.hotelbooking.HotelBookingSystem.Node;
+import com.hotelbooking.HotelBookingSystem.PropertyDirectory;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Static files from the working directory, with files over 64 KB streamed from disk: the
+ * stylesheet is served from the cache and the suite photo is streamed.
+ */
+class StaticFileHandlerTest {
+    private static final String CACHED = "/style.css";
+    private static final String STREAMED = "/suite.jpg";
+
+    @TempDir
+    Path dataDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Node node;
+    private HttpServer server;
+
+    @BeforeEach
+    void startNode() throws IOException {
+        PropertyDirectory directory = new PropertyDirectory(dataDir.toFile(), 100000);
+        directory.add(DEFAULT_PROPERTY, ROOM_INVENTORY);
+        node = new Node(directory);
+        server = createServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            Map.of("rate-limits", "off", "stream-threshold", String.valueOf(64 * 1024)), node, null);
+        node.open(DEFAULT_PROPERTY);
+        server.start();
+    }
+
+    @AfterEach
+    void stopNode() {
+        server.stop(0);
+        node.close();
+    }
+
+    @Test
+    void wholeFilesMatchTheDisk() throws IOException, InterruptedException {
+        for (String path : new String[] { CACHED, STREAMED }) {
+            HttpResponse<byte[]> response = get(path);
+            assertEquals(200, response.statusCode(), path);
+            assertArrayEquals(onDisk(path), response.body(), path);
+            assertEquals("bytes", response.headers().firstValue("Accept-Ranges").orElse(null));
+
+            String etag = response.headers().firstValue("ETag").orElseThrow();
+            assertEquals(304, get(path, "If-None-Match", etag).statusCode(), path);
+        }
+        // Streamed files are not read to compute their ETag
+        assertTrue(get(STREAMED).headers().firstValue("ETag").orElseThrow().startsWith("W/"));
+    }
+
+    @Test
+    void gzipIsSentOnlyWhenAccepted() throws IOException, InterruptedException {
+        HttpResponse<byte[]> gzipped = get(CACHED, "Accept-Encoding", "gzip, deflate");
+        assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals("Accept-Encoding", gzipped.headers().firstValue("Vary").orElse(null));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            assertArrayEquals(onDisk(CACHED), in.readAllBytes());
+        }
+
+        HttpResponse<byte[]> plain = get(CACHED);
+        assertEquals(null, plain.headers().firstValue("Content-Encoding").orElse(null));
+        assertArrayEquals(onDisk(CACHED), plain.body());
+        assertEquals(null, get(STREAMED, "Accept-Encoding", "gzip").headers().firstValue("Content-Encoding").orElse(null));
+    }
+
+    @Test
+    void singleRangesArePartialContent() throws IOException, InterruptedException {
+        for (String path : new String[] { CACHED, STREAMED }) {
+            byte[] file = onDisk(path);
+            int length = file.length;
+            assertRange(path, "bytes=100-199", 100, 199, file);
+            assertRange(path, "bytes=" + (length - 10) + "-", length - 10, length - 1, file);
+            assertRange(path, "bytes=-50", length - 50, length - 1, file);
+            assertRange(path, "bytes=0-" + (length + 1000), 0, length - 1, file);
+
+            // Several ranges, or an If-Range that no longer matches, get the whole file
+            assertEquals(200, get(path, "Range", "bytes=0-9,20-29").statusCode(), path);
+            HttpResponse<byte[]> stale = client.send(HttpRequest.newBuilder(URI.create(node.url + path))
+                .header("Range", "bytes=0-9").header("If-Range", "\"stale\"").build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, stale.statusCode(), path);
+            assertArrayEquals(file, stale.body(), path);
+        }
+    }
+
+    @Test
+    void unsatisfiableRangesAre416() throws IOException, InterruptedException {
+        for (String path : new String[] { CACHED, STREAMED }) {
+            int length = onDisk(path).length;
+            for (String range : new String[] { "bytes=" + length + "-", "bytes=-0", "bytes=50-10" }) {
+                HttpResponse<byte[]> response = get(path, "Range", range);
+                assertEquals(416, response.statusCode(), path + " " + range);
+                assertEquals("bytes */" + length, response.headers().firstValue("Content-Range").orElse(null));
+            }
+        }
+    }
+
+    private void assertRange(String path, String range, int first, int last, byte[] file) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = get(path, "Range", range);
+        assertEquals(206, response.statusCode(), path + " " + range);
+        assertEquals("bytes " + first + "-" + last + "/" + file.length,
+            response.headers().firstValue("Content-Range").orElse(null), path + " " + range);
+        assertArrayEquals(Arrays.copyOfRange(file, first, last + 1), response.body(), path + " " + range);
+    }
+
+    private static byte[] onDisk(String path) throws IOException {
+        return Files.readAllBytes(Path.of("." + path));
+    }
+
+    private HttpResponse<byte[]> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path)).build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpResponse<byte[]> get(String path, String header, String value) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(node.url + path)).header(header, value).build(),
+            HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
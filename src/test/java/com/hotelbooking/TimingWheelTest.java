@@ -0,0 +1,65 @@
+package com.hotelbooking;
+
+import static com.hotelbooking.ConcurrencyStressTest.assertNoFailures;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.hotelbooking.HotelBookingSystem.TimingWheel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    /**
+     * Schedules timers over every level of a 1 ms wheel, cancels every third, and checks
+     * the rest fire exactly once and never early.
+     */
+    @Test
+    void timersFireOnceNeverEarlyUnlessCancelled() {
+        List<String> failures = new ArrayList<>();
+        TimingWheel wheel = new TimingWheel(1);
+        int timers = 20000;
+        long[] due = new long[timers];
+        long[] fired = new long[timers];
+        AtomicInteger firings = new AtomicInteger();
+        List<TimingWheel.Timer> scheduled = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < timers; i++) {
+            int index = i;
+            // Mostly short delays, some past a level-1 bucket (64 ms) and a level-2 one (4096 ms)
+            long delay = i % 100 == 0 ? 4096 + random.nextInt(500) : random.nextInt(2000);
+            due[i] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            scheduled.add(wheel.schedule(delay, () -> {
+                fired[index] = System.nanoTime();
+                firings.incrementAndGet();
+            }));
+        }
+        // A cancel can lose the race with a timer that is already due; that one must have fired
+        boolean[] cancelled = new boolean[timers];
+        int cancels = 0;
+        for (int i = 0; i < timers; i += 3) {
+            cancelled[i] = wheel.cancel(scheduled.get(i));
+            if (cancelled[i]) cancels++;
+        }
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5000));
+
+        // Read first: the tasks' writes happen before their increments
+        int firedCount = firings.get();
+        for (int i = 0; i < timers; i++) {
+            if (cancelled[i]) {
+                if (fired[i] != 0) failures.add("Cancelled timer " + i + " fired");
+            } else if (fired[i] == 0) {
+                failures.add("Timer " + i + " never fired");
+            } else if (fired[i] < due[i]) {
+                failures.add("Timer " + i + " fired " + (due[i] - fired[i]) / 1000 + " us early");
+            }
+        }
+        assertNoFailures(failures);
+        assertEquals(timers - cancels, firedCount);
+        assertEquals(0, wheel.pending());
+    }
+}
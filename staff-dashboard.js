@@ -6,22 +6,94 @@ document.addEventListener('DOMContentLoaded', () => {
         return;
     }
     
-    loadBookings();
+    subscribeToChanges();
     setupFormHandlers();
 });
 
+// Bookings as last loaded, kept current by the event stream
+const bookingsById = new Map();
+let streamOpen = false;
+let pendingEvents = null;
+
 // Load all bookings from backend
 async function loadBookings() {
+    // Changes that arrive while the full list is loading are replayed on top of it
+    pendingEvents = [];
     try {
         const response = await fetch('http://localhost:8000/api/bookings');
         const bookings = await response.json();
         
-        displayBookings(bookings);
-        updateStats(bookings);
+        bookingsById.clear();
+        bookings.forEach(booking => bookingsById.set(booking.bookingId, booking));
+        pendingEvents.forEach(applyEvent);
+        renderBookings();
     } catch (error) {
         console.error('Error loading bookings:', error);
         document.getElementById('bookingsTableBody').innerHTML = 
             '<tr><td colspan="8" class="no-data" style="color: red;">Failed to load bookings. Please ensure the server is running.</td></tr>';
+    } finally {
+        pendingEvents = null;
+    }
+}
+
+function renderBookings() {
+    const bookings = [...bookingsById.values()].sort((a, b) => a.bookingId - b.bookingId);
+    displayBookings(bookings);
+    updateStats(bookings);
+}
+
+// Re-render from the live copy when the stream is up, otherwise refetch
+function refreshBookings() {
+    if (streamOpen) {
+        renderBookings();
+    } else {
+        loadBookings();
+    }
+}
+
+// Booking deltas pushed by the server; the full list is only fetched on (re)connect
+function subscribeToChanges() {
+    if (!window.EventSource) {
+        loadBookings();
+        return;
+    }
+    
+    const stream = new EventSource('http://localhost:8000/api/events');
+    let renderQueued = false;
+    const onChange = (event) => {
+        const change = { type: event.type, data: JSON.parse(event.data) };
+        if (pendingEvents) {
+            pendingEvents.push(change);
+            return;
+        }
+        applyEvent(change);
+        // Render once per burst of events
+        if (!renderQueued) {
+            renderQueued = true;
+            requestAnimationFrame(() => {
+                renderQueued = false;
+                renderBookings();
+            });
+        }
+    };
+    
+    stream.onopen = () => {
+        streamOpen = true;
+        loadBookings();
+    };
+    stream.onerror = () => {
+        streamOpen = false;
+    };
+    stream.addEventListener('booking', onChange);
+    stream.addEventListener('deleted', onChange);
+    stream.addEventListener('resync', () => loadBookings());
+}
+
+function applyEvent(change) {
+    if (change.type === 'booking') {
+        bookingsById.set(change.data.bookingId, change.data);
+    } else if (change.type === 'deleted') {
+        bookingsById.delete(change.data.bookingId);
     }
 }
 
@@ -78,14 +150,30 @@ function updateStats(bookings) {
     document.getElementById('totalBookings').textContent = totalBookings;
     document.getElementById('totalRevenue').textContent = '₹' + totalRevenue.toLocaleString('en-IN');
     document.getElementById('todayCheckIns').textContent = todayCheckIns;
+    
+    loadMonthReport();
+}
+
+// Month-to-date occupancy, ADR and RevPAR, aggregated on the server
+async function loadMonthReport() {
+    try {
+        const response = await fetch('http://localhost:8000/api/reports?period=month');
+        const report = await response.json();
+        if (!report.success) return;
+        
+        document.getElementById('monthOccupancy').textContent = report.total.occupancy.toFixed(1) + '%';
+        document.getElementById('monthAdr').textContent = '₹' + Math.round(report.total.adr).toLocaleString('en-IN');
+        document.getElementById('monthRevpar').textContent = '₹' + Math.round(report.total.revpar).toLocaleString('en-IN');
+    } catch (error) {
+        console.error('Error loading report:', error);
+    }
 }
 
 // View booking details
 async function viewDetails(bookingId) {
     try {
-        const response = await fetch('http://localhost:8000/api/bookings');
-        const bookings = await response.json();
-        const booking = bookings.find(b => b.bookingId === bookingId);
+        const response = await fetch(`http://localhost:8000/api/bookings/${bookingId}`);
+        const booking = response.ok ? await response.json() : null;
         
         if (booking) {
             const checkInDate = new Date(booking.checkIn).toLocaleDateString('en-IN', {
@@ -146,9 +234,8 @@ async function viewDetails(bookingId) {
 // Edit booking
 async function editBooking(bookingId) {
     try {
-        const response = await fetch('http://localhost:8000/api/bookings');
-        const bookings = await response.json();
-        const booking = bookings.find(b => b.bookingId === bookingId);
+        const response = await fetch(`http://localhost:8000/api/bookings/${bookingId}`);
+        const booking = response.ok ? await response.json() : null;
         
         if (booking) {
             document.getElementById('editBookingId').value = booking.bookingId;
@@ -185,7 +272,7 @@ async function deleteBooking(bookingId) {
         
         if (result.success) {
             alert('Booking deleted successfully!');
-            loadBookings();
+            refreshBookings();
         } else {
             alert('Failed to delete booking: ' + result.message);
         }
@@ -212,22 +299,28 @@ function setupFormHandlers() {
             return;
         }
         
+        // Several rooms go through the group endpoint so they are booked all-or-nothing
+        const rooms = parseInt(data.rooms, 10) || 1;
+        delete data.rooms;
+        const line = new URLSearchParams(data).toString();
+        
         try {
-            const response = await fetch('http://localhost:8000/api/book', {
+            const response = await fetch(rooms > 1 ? 'http://localhost:8000/api/book/batch' : 'http://localhost:8000/api/book', {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/x-www-form-urlencoded',
                 },
-                body: new URLSearchParams(data).toString()
+                body: rooms > 1 ? Array(rooms).fill(line).join('\n') : line
             });
             
             const result = await response.json();
             
             if (result.success) {
-                alert('Booking added successfully!');
+                alert(rooms > 1 ? `${result.count} rooms booked successfully!` : 'Booking added successfully!');
                 e.target.reset();
                 showDashboard();
-                loadBookings();
+            } else if (rooms > 1) {
+                alert('Failed to add booking: ' + result.message);
             } else {
                 alert('Failed to add booking. Please try again.');
             }
@@ -266,7 +359,7 @@ function setupFormHandlers() {
             if (result.success) {
                 alert('Booking updated successfully!');
                 closeEditModal();
-                loadBookings();
+                refreshBookings();
             } else {
                 alert('Failed to update booking: ' + result.message);
             }
@@ -286,7 +379,7 @@ function setupFormHandlers() {
 function showDashboard() {
     document.getElementById('dashboardPage').style.display = 'block';
     document.getElementById('addBookingPage').style.display = 'none';
-    loadBookings();
+    refreshBookings();
 }
 
 function showAddBooking() {